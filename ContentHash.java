@@ -0,0 +1,22 @@
+/**
+ * SHA-256 of text content as lowercase hex, for content-addressed keys (simulation cache,
+ * launch checkpoint fingerprints). Callers decide what goes into the content.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static String sha256(String content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -18,6 +18,9 @@ public class FlowConfigDataDTO {
     private String description;
     private boolean scheduling;
     private String schedulingCron;
+    // One-shot launch time; ignored for a recurring config, whose fire times come from schedulingCron
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime dateSchedule;
     private String createBy;
     private ServiceVerificationBeforeDTO serviceVerificationBefore;
     private ConfigSettingsDTO configSettings;
@@ -0,0 +1,171 @@
+@Slf4j
+@Component
+public class DeviceFanOut {
+
+    private final TaskExecutor deviceExecutor;
+    private final FlowDeviceStageStatusRepository deviceStageStatusRepository;
+    private final FlowHeartbeatRegistry flowHeartbeatRegistry;
+    private final LaunchCheckpointStore launchCheckpointStore;
+    private final LaunchCancellation launchCancellation;
+
+    // Devices of one flow worked on at the same time
+    @Value("${flow.launch.device-parallelism:16}")
+    private int deviceParallelism;
+
+    // A stage fails when more than this share of its devices fail; 0 = any device failure fails the stage
+    @Value("${flow.launch.device-failure-threshold-percent:0}")
+    private double failureThresholdPercent;
+
+    public DeviceFanOut(@Qualifier("launchDeviceExecutor") TaskExecutor deviceExecutor,
+                        FlowDeviceStageStatusRepository deviceStageStatusRepository,
+                        FlowHeartbeatRegistry flowHeartbeatRegistry,
+                        LaunchCheckpointStore launchCheckpointStore,
+                        LaunchCancellation launchCancellation) {
+        this.deviceExecutor = deviceExecutor;
+        this.deviceStageStatusRepository = deviceStageStatusRepository;
+        this.flowHeartbeatRegistry = flowHeartbeatRegistry;
+        this.launchCheckpointStore = launchCheckpointStore;
+        this.launchCancellation = launchCancellation;
+    }
+
+    @FunctionalInterface
+    public interface DeviceTask {
+        void run(String device) throws Exception;
+    }
+
+    /**
+     * Run the task for every device, at most deviceParallelism at once, and wait for all of them.
+     * Per-device outcomes are stored in flow_device_stage_status (latest run of the stage only).
+     * Throws if the share of failed devices exceeds the configured threshold.
+     */
+    public List<FlowDeviceStageStatus> run(long id, String stage, List<String> devices, DeviceTask task) {
+        return run(id, stage, devices, task, devices.size(), false);
+    }
+
+    /*
+     * keepPrevious: a resumed stage only replaces the status rows of the devices it re-ran.
+     * totalDevices: the stage's whole target list; devices an earlier attempt finished are not
+     * in devices but count as succeeded, so resuming does not shrink the threshold's base.
+     */
+    private List<FlowDeviceStageStatus> run(long id, String stage, List<String> devices, DeviceTask task,
+                                            int totalDevices, boolean keepPrevious) {
+        LaunchCancellation.Token cancellation = launchCancellation.token(id);
+        Semaphore slots = new Semaphore(deviceParallelism);
+        List<CompletableFuture<FlowDeviceStageStatus>> futures = new ArrayList<>(devices.size());
+        try {
+            for (String device : devices) {
+                slots.acquire();
+                if (cancellation.isCancelled()) {
+                    slots.release();
+                    break;
+                }
+                try {
+                    futures.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return runDevice(id, stage, device, task, cancellation);
+                        } finally {
+                            slots.release();
+                        }
+                    }, deviceExecutor));
+                } catch (RuntimeException e) {
+                    slots.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Interrupted launch: stop submitting; cancelled devices end quickly below
+            Thread.currentThread().interrupt();
+        }
+
+        List<FlowDeviceStageStatus> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<FlowDeviceStageStatus> future : futures) {
+            results.add(future.join());
+        }
+        if (keepPrevious) {
+            deviceStageStatusRepository.deleteByFlowConfigIdAndStageAndDeviceIn(id, stage, devices);
+        } else {
+            deviceStageStatusRepository.deleteByFlowConfigIdAndStage(id, stage);
+        }
+        deviceStageStatusRepository.saveAll(results);
+
+        cancellation.throwIfCancelled();
+        long failed = results.stream().filter(r -> r.getStatus() == FlowConfig.Status.FAIL).count();
+        if (results.size() < devices.size()) {
+            throw new IllegalStateException(stage + " interrupted after " + results.size() + "/" + devices.size() + " devices");
+        }
+        double failedPercent = totalDevices == 0 ? 0 : failed * 100.0 / totalDevices;
+        if (failed > 0 && failedPercent > failureThresholdPercent) {
+            throw new IllegalStateException(String.format("%s failed on %d/%d devices (%.1f%% > %.1f%%)",
+                stage, failed, totalDevices, failedPercent, failureThresholdPercent));
+        }
+        if (failed > 0) {
+            log.warn("{} for flow {}: {}/{} devices failed, within the {}% threshold",
+                     stage, id, failed, totalDevices, failureThresholdPercent);
+        }
+        return results;
+    }
+
+    /**
+     * Fan the stage out over the launch's devices, or run the whole-flow call as before for a
+     * flow without target devices. For a non-idempotent stage every finished device is
+     * checkpointed, and a resumed attempt skips the devices an earlier attempt already did.
+     */
+    public void runOrWhole(LaunchContext context, LaunchStage stage, DeviceTask perDevice, Runnable wholeFlow) {
+        long id = context.getId();
+        List<String> devices = context.getDevices();
+        if (devices.isEmpty()) {
+            wholeFlow.run();
+            return;
+        }
+        if (stage.idempotent()) {
+            run(id, stage.name(), devices, perDevice);
+            return;
+        }
+
+        Set<String> done = context.completedDevices(stage.name());
+        List<String> remaining = devices.stream().filter(d -> !done.contains(d)).collect(Collectors.toList());
+        if (!done.isEmpty()) {
+            log.info("{} for flow {}: resuming, {} of {} devices already done", stage.name(), id, done.size(), devices.size());
+        }
+        run(id, stage.name(), remaining, device -> {
+            perDevice.run(device);
+            launchCheckpointStore.deviceDone(context, stage.name(), device);
+        }, devices.size(), !done.isEmpty());
+    }
+
+    private FlowDeviceStageStatus runDevice(long id, String stage, String device, DeviceTask task,
+                                            LaunchCancellation.Token cancellation) {
+        long start = System.nanoTime();
+        FlowConfig.Status status = FlowConfig.Status.SUCCESS;
+        String message = null;
+        try (LaunchCancellation.Registration ignored = cancellation.interruptOnCancel()) {
+            cancellation.throwIfCancelled();
+            task.run(device);
+        } catch (Exception ex) {
+            if (cancellation.isCancelled()) {
+                return deviceStatus(id, stage, device, FlowConfig.Status.CANCELLED, cancellation.getReason(), start);
+            }
+            status = FlowConfig.Status.FAIL;
+            message = ex.getMessage() != null && ex.getMessage().length() > 2000
+                ? ex.getMessage().substring(0, 2000)
+                : ex.getMessage();
+            log.warn("{} failed for flow {} on device {}: {}", stage, id, device, ex.getMessage());
+        }
+        // A large fan-out is progress too - keep the scheduler from declaring the run dead
+        flowHeartbeatRegistry.beat(id);
+        return deviceStatus(id, stage, device, status, message, start);
+    }
+
+    private FlowDeviceStageStatus deviceStatus(long id, String stage, String device, FlowConfig.Status status,
+                                               String message, long start) {
+        return FlowDeviceStageStatus.builder()
+            .flowConfigId(id)
+            .stage(stage)
+            .device(device)
+            .status(status)
+            .message(message)
+            .durationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+            .finishedAt(LocalDateTime.now())
+            .build();
+    }
+}
@@ -3,11 +3,28 @@
 @Slf4j
 public class FlowConfigLaunchService {
 
-    private final FlowConfigService flowConfigService;
-    private final SimulationService simulationService;
-    private final FlowConfigRepository flowConfigRepository;
+    /*
+     * Simulation and Pre-Check are independent and overlap; the switch is only touched
+     * once both passed. Other workflows (e.g. install/upgrade) are built from the same stages.
+     */
+    static final LaunchWorkflow LAUNCH_ALL = LaunchWorkflow.builder("launch-all")
+            .stage("simulation")
+            .stage("pre_check")
+            .stage("switch_config", "simulation", "pre_check")
+            .stage("post_check", "switch_config")
+            .stage("result_diff", "post_check")
+            .build();
 
-    @Async
+    private final FlowConfigService flowConfigService;
+    private final LaunchSnapshotLoader launchSnapshotLoader;
+    private final LaunchStageEngine launchStageEngine;
+    private final LaunchStatusJournal launchStatusJournal;
+    private final LaunchLogWriter launchLogWriter;
+    private final LaunchCheckpointStore launchCheckpointStore;
+    private final LaunchCancellation launchCancellation;
+    private final FlowHeartbeatRegistry flowHeartbeatRegistry;
+
+    @Async("launchTaskExecutor")
     public CompletableFuture<Void> launchAllAsync(long id) {
         try {
             launchAll(id);
@@ -19,163 +36,78 @@ public class FlowConfigLaunchService {
 
     public void launchAll(long id) throws Exception {
         log.info("Starting LaunchAll for FlowConfig ID: {}", id);
-        flowConfigService.clearLogFile(id);
-
-        FlowConfig flowConfig = flowConfigService.getFlowConfigEntityById(id);
-        if (flowConfig == null) {
-            log.warn("FlowConfig ID {} not found", id);
-            return;
-        }
-
-        if (isSimulationEnabled(flowConfig)) {
-            if (!runSimulationTest(flowConfig)) {
-                return;
-            }
-        }
-
-        flowConfigService.updateStatusLaunch(id, FlowConfig.Status.IN_PROGRESS);
-        flowConfigService.writeToLog(id, "Launch process started.");
-
-        try {
-            preCheckStage(id);
-            switchConfigStage(id);
-            postCheckStage(id);
-            resultDiffStage(id);
-
-            finalizeSuccess(id, flowConfig);
-
-        } catch (Exception ex) {
-            finalizeFailure(id, flowConfig, ex);
-            throw ex;
-        }
-    }
-
-    private boolean isSimulationEnabled(FlowConfig flowConfig) {
-        return flowConfig.getConfigSettings() != null &&
-                flowConfig.getConfigSettings().isSimulationTest();
-    }
-
-    private boolean runSimulationTest(FlowConfig flowConfig) {
-        Long id = flowConfig.getId();
-        List<String> switchConfigurations = flowConfig.getConfigSettings().getSwitchConfiguration();
-        if (switchConfigurations == null || switchConfigurations.isEmpty()) {
-            flowConfigService.writeToLog(id, "Missing switch configurations for simulation.");
-            flowConfigRepository.updateStatus(id, FlowConfig.Status.FAIL);
-            return false;
-        }
-
-        flowConfigService.writeToLog(id, "Running simulation test...");
-        String status = simulationService.simulateConfiguration(switchConfigurations);
-        if (!"SUCCESS".equals(status)) {
-            flowConfigService.writeToLog(id, "Simulation failed. Status: " + status);
-            flowConfigRepository.updateStatus(id, FlowConfig.Status.FAIL);
-            return false;
-        }
-        flowConfigService.writeToLog(id, "Simulation completed successfully.");
-        return true;
-    }
-
-    @Transactional
-    public void preCheckStage(long id) {
+        // Fresh log for this run; the previous run's log is archived
+        launchLogWriter.open(id);
+        LaunchCancellation.Token cancellation = launchCancellation.open(id);
         try {
-            flowConfigService.writeToLog(id, "Starting Pre-Check...");
-            flowConfigService.updateStatusServiceVerificationPre(id, FlowConfig.Status.IN_PROGRESS);
-
-            flowConfigService.runPreCheck(id, "2", true);
-
-            flowConfigService.updateStatusServiceVerificationPre(id, FlowConfig.Status.SUCCESS);
-            flowConfigService.writeToLog(id, "Pre-Check completed successfully.");
-        } catch (Exception ex) {
-            flowConfigService.updateStatusServiceVerificationPre(id, FlowConfig.Status.FAIL);
-            flowConfigService.writeToLog(id, "Pre-Check failed: " + ex.getMessage());
-            throw ex;
+            runLaunch(id, cancellation);
+        } finally {
+            launchCancellation.close(id, cancellation);
+            launchLogWriter.close(id);
         }
     }
 
-    @Transactional
-    public void switchConfigStage(long id) {
-        try {
-            flowConfigService.writeToLog(id, "Starting Switch Config Update...");
-            flowConfigService.updateStatusConfigSetting(id, FlowConfig.Status.IN_PROGRESS);
+    private void runLaunch(long id, LaunchCancellation.Token cancellation) throws Exception {
 
-            flowConfigService.updateSwitchConfig(id, true);
-
-            flowConfigService.updateStatusConfigSetting(id, FlowConfig.Status.SUCCESS);
-            flowConfigService.writeToLog(id, "Switch Config Update completed.");
-        } catch (Exception ex) {
-            flowConfigService.updateStatusConfigSetting(id, FlowConfig.Status.FAIL);
-            flowConfigService.writeToLog(id, "Switch Config Update failed: " + ex.getMessage());
-            throw ex;
-        }
-    }
-
-    @Transactional
-    public void postCheckStage(long id) {
-        FlowConfigFullResponseDTO flowConfigDTO = flowConfigService.getFlowConfigById(id);
-        ServiceVerificationAfterDTO afterDTO = flowConfigDTO.getData().getServiceVerificationAfter();
-
-        if (afterDTO == null) {
-            flowConfigService.writeToLog(id, "No ServiceVerificationAfter data. Skipping Post-Check & Result-Diff.");
-            flowConfigService.updateStatusServiceVerificationPost(id, FlowConfig.Status.NOT_EXECUTED);
-            flowConfigService.updateStatusResultDiff(id, FlowConfig.Status.NOT_EXECUTED);
+        // The only read of the config for this run; stages work off the snapshot
+        Optional<LaunchSnapshot> snapshot = launchSnapshotLoader.load(id);
+        if (snapshot.isEmpty()) {
+            log.warn("FlowConfig ID {} not found", id);
             return;
         }
 
-        FlowConfigPostCheckDataDTO dataDTO = FlowConfigPostCheckDataDTO.builder()
-                .normalDeterminationCriteriaDtoList(afterDTO.getNormalDeterminationCriteria())
-                .build();
-
-        FlowConfigPostCheckRequestDTO postCheckRequestDTO = FlowConfigPostCheckRequestDTO.builder()
-                .data(dataDTO)
-                .build();
-
-        try {
-            flowConfigService.writeToLog(id, "Starting Post-Check...");
-            flowConfigService.updateStatusServiceVerificationPost(id, FlowConfig.Status.IN_PROGRESS);
-
-            flowConfigService.runPostCheck(id, postCheckRequestDTO, "2", true);
-
-            flowConfigService.updateStatusServiceVerificationPost(id, FlowConfig.Status.SUCCESS);
-            flowConfigService.writeToLog(id, "Post-Check completed successfully.");
-        } catch (Exception ex) {
-            flowConfigService.updateStatusServiceVerificationPost(id, FlowConfig.Status.FAIL);
-            flowConfigService.writeToLog(id, "Post-Check failed: " + ex.getMessage());
-            throw ex;
-        }
-    }
+        launchStatusJournal.record(id, LaunchStatusJournal.Column.LAUNCH, FlowConfig.Status.IN_PROGRESS);
+        flowConfigService.writeToLog(id, "Launch process started.");
 
-    @Transactional
-    public void resultDiffStage(long id) {
         try {
-            flowConfigService.writeToLog(id, "Starting Result-Diff...");
-            flowConfigService.updateStatusResultDiff(id, FlowConfig.Status.IN_PROGRESS);
+            LaunchCheckpointStore.Resume resume =
+                    launchCheckpointStore.load(id, LaunchCheckpointStore.fingerprint(snapshot.get()));
+            if (resume.isResuming()) {
+                flowConfigService.writeToLog(id, "Resuming an interrupted attempt after stages "
+                        + resume.getCompletedStages().keySet() + ".");
+            }
+            launchStageEngine.run(LAUNCH_ALL, new LaunchContext(snapshot.get(), resume, cancellation));
 
-            flowConfigService.processResultDiff(id, true);
+            finalizeSuccess(id);
 
-            flowConfigService.updateStatusResultDiff(id, FlowConfig.Status.SUCCESS);
-            flowConfigService.writeToLog(id, "Result-Diff completed successfully.");
         } catch (Exception ex) {
-            flowConfigService.updateStatusResultDiff(id, FlowConfig.Status.FAIL);
-            flowConfigService.writeToLog(id, "Result-Diff failed: " + ex.getMessage());
+            if (flowHeartbeatRegistry.isAbandoned(id)) {
+                // Declared stalled by the scheduler, which requeues or fails the row once this returns
+                launchStatusJournal.flush(id);
+                flowConfigService.writeToLog(id, "Launch attempt abandoned after its heartbeat stopped.");
+                throw ex;
+            }
+            if (cancellation.isCancelled()) {
+                finalizeCancelled(id, cancellation.getReason());
+                throw new LaunchCancelledException(id, cancellation.getReason());
+            }
+            finalizeFailure(id, ex);
             throw ex;
         }
     }
 
-    private void finalizeSuccess(long id, FlowConfig flowConfig) {
-        flowConfig.setExecuted(true);
-        flowConfig.setExecutedTime(LocalDateTime.now());
-        flowConfig.setStatusLaunch(FlowConfig.Status.SUCCESS);
-        flowConfigService.updateFlowConfigWithoutDeviceConfigs(id, flowConfig);
+    // Targeted update - no second load and full save() of the entity graph
+    private void finalizeSuccess(long id) {
+        // Stage statuses become durable before the terminal state - and so before the launch returns
+        launchStatusJournal.flush(id);
+        flowConfigService.completeLaunch(id, FlowConfig.Status.SUCCESS);
         flowConfigService.writeToLog(id, "Launch process completed successfully.");
         log.info("LaunchAll SUCCESS for ID: {}", id);
     }
 
-    private void finalizeFailure(long id, FlowConfig flowConfig, Exception ex) {
-        flowConfig.setStatusLaunch(FlowConfig.Status.FAIL);
-        flowConfigService.updateFlowConfigWithoutDeviceConfigs(id, flowConfig);
+    private void finalizeFailure(long id, Exception ex) {
+        launchStatusJournal.flush(id);
+        flowConfigService.completeLaunch(id, FlowConfig.Status.FAIL);
         flowConfigService.writeToLog(id, "Launch process failed: " + ex.getMessage());
         log.error("LaunchAll FAILED for ID: {}", id, ex);
     }
+
+    private void finalizeCancelled(long id, String reason) {
+        launchStatusJournal.flush(id);
+        flowConfigService.completeLaunch(id, FlowConfig.Status.CANCELLED);
+        flowConfigService.writeToLog(id, "Launch process cancelled: " + reason);
+        log.info("LaunchAll CANCELLED for ID: {}", id);
+    }
 }
 
 
@@ -187,6 +119,14 @@ public class FlowConfigLaunchService {
 public class FlowConfigService {
 
     private final FlowConfigRepository flowConfigRepository;
+    private final LaunchLogWriter launchLogWriter;
+    private final LaunchOutbox launchOutbox;
+    private final LaunchCheckpointRepository launchCheckpointRepository;
+    private final LeaseOwner leaseOwner;
+
+    public void writeToLog(long id, String message) {
+        launchLogWriter.append(id, message);
+    }
 
     @Transactional
     public void updateStatusServiceVerificationPre(Long id, FlowConfig.Status newStatus) {
@@ -208,6 +148,55 @@ public class FlowConfigService {
         flowConfigRepository.updateStatusResultDiff(id, newStatus);
     }
 
+    /**
+     * One transaction for a whole journal batch of coalesced status transitions
+     */
+    @Transactional
+    public void applyStatusBatch(Map<Long, Map<LaunchStatusJournal.Column, FlowConfig.Status>> batch) {
+        batch.forEach((id, transitions) -> transitions.forEach((column, status) -> {
+            switch (column) {
+                case LAUNCH:
+                    flowConfigRepository.updateStatusLaunch(id, status);
+                    break;
+                case PRE_CHECK:
+                    flowConfigRepository.updateStatusServiceVerificationPre(id, status);
+                    break;
+                case CONFIG_SETTING:
+                    flowConfigRepository.updateStatusConfigSetting(id, status);
+                    break;
+                case POST_CHECK:
+                    flowConfigRepository.updateStatusServiceVerificationPost(id, status);
+                    break;
+                case RESULT_DIFF:
+                    flowConfigRepository.updateStatusResultDiff(id, status);
+                    break;
+            }
+        }));
+    }
+
+    /**
+     * Terminal launch state and its notification in one short transaction. Only lands while the
+     * row is still IN_PROGRESS under this node's lease: after a takeover the new owner's run is
+     * left alone and no second event is enqueued. Returns false when nothing was written.
+     */
+    @Transactional
+    public boolean completeLaunch(Long id, FlowConfig.Status status) {
+        int updated = status == FlowConfig.Status.SUCCESS
+            ? flowConfigRepository.updateOwnedLaunchResult(id, leaseOwner.getId(), FlowConfig.Status.IN_PROGRESS,
+                                                          status, true, LocalDateTime.now())
+            : flowConfigRepository.updateOwnedStatus(id, leaseOwner.getId(), FlowConfig.Status.IN_PROGRESS, status);
+        if (updated == 0) {
+            log.warn("FlowConfig ID {} is no longer leased to this node, {} not recorded", id, status);
+            return false;
+        }
+        if (status != FlowConfig.Status.FAIL) {
+            // Same transaction: a finished or cancelled launch never leaves checkpoints a later run would resume from
+            launchCheckpointRepository.deleteByFlowConfigId(id);
+        }
+        launchOutbox.enqueue(id, LaunchOutbox.LAUNCH_FINISHED, status.name());
+        return true;
+    }
+
     @Transactional
     public void updateFlowConfigWithoutDeviceConfigs(Long id, FlowConfig flowConfig) {
         flowConfigRepository.save(flowConfig);
@@ -0,0 +1,143 @@
+/**
+ * Cancellation tokens of the launches running on this node. A launch opens its token when it
+ * starts; stages, the device fan-out and outbound client calls check it between steps and
+ * register hooks (interrupt a thread, abort an HTTP request) that fire the moment the launch
+ * is cancelled, so a cancelled launch frees its executor threads without waiting for device
+ * timeouts. Cancellation is cooperative: work already sent to a device is not rolled back.
+ */
+@Slf4j
+@Component
+public class LaunchCancellation {
+
+    private final Map<Long, Token> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * Undoes a hook registration; closing after the hook fired is harmless
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public static final class Token {
+        // Never cancelled - for code running outside a launch
+        public static final Token NONE = new Token(0);
+
+        private final long flowConfigId;
+        private final List<Runnable> hooks = new CopyOnWriteArrayList<>();
+        private volatile String reason;
+
+        private Token(long flowConfigId) {
+            this.flowConfigId = flowConfigId;
+        }
+
+        public boolean isCancelled() {
+            return reason != null;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public void throwIfCancelled() {
+            if (reason != null) {
+                throw new LaunchCancelledException(flowConfigId, reason);
+            }
+        }
+
+        /**
+         * Run the hook when the launch is cancelled, or right away if it already was
+         */
+        public Registration onCancel(Runnable hook) {
+            hooks.add(hook);
+            if (reason != null && hooks.remove(hook)) {
+                hook.run();
+            }
+            return () -> hooks.remove(hook);
+        }
+
+        /**
+         * Interrupt the calling thread on cancel until the registration is closed
+         */
+        public Registration interruptOnCancel() {
+            Thread thread = Thread.currentThread();
+            return onCancel(thread::interrupt);
+        }
+
+        private boolean cancel(String cancelReason) {
+            synchronized (this) {
+                if (reason != null) {
+                    return false;
+                }
+                reason = cancelReason;
+            }
+            for (Runnable hook : hooks) {
+                if (hooks.remove(hook)) {
+                    try {
+                        hook.run();
+                    } catch (RuntimeException e) {
+                        log.warn("Cancel hook of flow config {} failed: {}", flowConfigId, e.getMessage());
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    public Token open(long id) {
+        Token token = new Token(id);
+        tokens.put(id, token);
+        return token;
+    }
+
+    public void close(long id, Token token) {
+        tokens.remove(id, token);
+    }
+
+    /**
+     * Token of the launch running for this flow config, or NONE
+     */
+    public Token token(long id) {
+        return tokens.getOrDefault(id, Token.NONE);
+    }
+
+    public void throwIfCancelled(long id) {
+        token(id).throwIfCancelled();
+    }
+
+    /**
+     * Cancel the launch running on this node. Returns false if none is running here or it was
+     * already cancelled.
+     */
+    public boolean cancel(long id, String reason) {
+        Token token = tokens.get(id);
+        if (token == null || !token.cancel(reason)) {
+            return false;
+        }
+        log.info("Cancelling launch of flow config {}: {}", id, reason);
+        return true;
+    }
+}
+
+
+/**
+ * Thrown where a cancelled launch stops; ends the launch in the CANCELLED state, not FAIL
+ */
+public class LaunchCancelledException extends RuntimeException {
+
+    public LaunchCancelledException(long flowConfigId, String reason) {
+        super("Launch of flow config " + flowConfigId + " cancelled: " + reason);
+    }
+
+    /**
+     * Whether the exception, or anything in its cause chain, is a cancellation
+     */
+    public static boolean isCancellation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LaunchCancelledException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Stage checkpoints of the current attempt of a launch. A stage that finished is recorded
+ * with its outcome and outputs; a non-idempotent stage also records each finished device.
+ * When a launch starts and finds checkpoints from an unfinished earlier attempt (crash,
+ * dead worker, manual retry after FAIL) for the same config, it resumes after them.
+ * Checkpoints belong to one fire of the flow: they are dropped when the launch succeeds or is
+ * cancelled, when a recurring flow is re-armed for its next fire, when the devices or switch
+ * configuration changed, or after the TTL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LaunchCheckpointStore {
+
+    private final LaunchCheckpointRepository launchCheckpointRepository;
+    private final ObjectMapper objectMapper;
+
+    // Older leftovers are stale (e.g. a failed run followed much later by the next cron fire)
+    @Value("${flow.launch.checkpoint-ttl:PT6H}")
+    private Duration checkpointTtl;
+
+    @Getter
+    public static class Resume {
+        private final String fingerprint;
+        private final Map<String, LaunchStage.StageOutcome> completedStages = new HashMap<>();
+        private final Map<String, Map<String, String>> outputs = new HashMap<>();
+        private final Map<String, Set<String>> completedDevices = new HashMap<>();
+
+        Resume(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public boolean isResuming() {
+            return !completedStages.isEmpty() || !completedDevices.isEmpty();
+        }
+    }
+
+    /**
+     * Hash of what a finished stage or device depends on: the target devices and the switch
+     * configuration pushed to them. Renaming the flow or toggling simulation keeps the checkpoints.
+     */
+    public static String fingerprint(LaunchSnapshot snapshot) {
+        String pushed = String.join("\n", snapshot.getTargetDevices())
+                + "\u0000" + String.join("\n", snapshot.getSwitchConfigurations());
+        return ContentHash.sha256(pushed);
+    }
+
+    /**
+     * Checkpoints this attempt can resume from; anything unusable is deleted
+     */
+    public Resume load(long id, String fingerprint) {
+        Resume resume = new Resume(fingerprint);
+        List<LaunchCheckpoint> checkpoints = launchCheckpointRepository.findByFlowConfigId(id);
+        if (checkpoints.isEmpty()) {
+            return resume;
+        }
+
+        LocalDateTime oldest = LocalDateTime.now().minus(checkpointTtl);
+        boolean usable = checkpoints.stream().allMatch(c ->
+                fingerprint.equals(c.getFingerprint()) && c.getCompletedAt().isAfter(oldest));
+        if (!usable) {
+            log.info("Discarding {} stale launch checkpoints of flow config {}", checkpoints.size(), id);
+            launchCheckpointRepository.deleteByFlowConfigId(id);
+            return resume;
+        }
+
+        for (LaunchCheckpoint checkpoint : checkpoints) {
+            if (checkpoint.getDevice() != null) {
+                resume.completedDevices.computeIfAbsent(checkpoint.getStage(), s -> new HashSet<>()).add(checkpoint.getDevice());
+                resume.outputs.computeIfAbsent(checkpoint.getStage(), s -> new HashMap<>())
+                        .putAll(readOutput(checkpoint.getOutput()));
+            } else {
+                resume.completedStages.put(checkpoint.getStage(), LaunchStage.StageOutcome.valueOf(checkpoint.getOutcome()));
+                resume.outputs.put(checkpoint.getStage(), readOutput(checkpoint.getOutput()));
+            }
+        }
+        return resume;
+    }
+
+    public void stageDone(LaunchContext context, String stage, LaunchStage.StageOutcome outcome) {
+        launchCheckpointRepository.save(LaunchCheckpoint.builder()
+                .flowConfigId(context.getId())
+                .stage(stage)
+                .outcome(outcome.name())
+                .output(writeOutput(context.outputsOf(stage)))
+                .fingerprint(context.getFingerprint())
+                .completedAt(LocalDateTime.now())
+                .build());
+    }
+
+    // Carries the device's own output, so a resumed stage still has the outputs of skipped devices
+    public void deviceDone(LaunchContext context, String stage, String device) {
+        String output = context.getOutput(stage, device);
+        launchCheckpointRepository.save(LaunchCheckpoint.builder()
+                .flowConfigId(context.getId())
+                .stage(stage)
+                .device(device)
+                .outcome(LaunchStage.StageOutcome.DONE.name())
+                .output(output != null ? writeOutput(Collections.singletonMap(device, output)) : null)
+                .fingerprint(context.getFingerprint())
+                .completedAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Forget every checkpoint of the flow - the next launch starts from the first stage
+     */
+    public void discard(long id) {
+        launchCheckpointRepository.deleteByFlowConfigId(id);
+    }
+
+    private String writeOutput(Map<String, String> output) {
+        if (output.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(output);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize stage output", e);
+        }
+    }
+
+    private Map<String, String> readOutput(String output) {
+        if (output == null) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(output, new TypeReference<Map<String, String>>() { });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stage checkpoint output", e);
+        }
+    }
+}
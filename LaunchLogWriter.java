@@ -0,0 +1,467 @@
+/**
+ * Append-only per-launch log. Lines go into a bounded per-launch buffer and reach the file
+ * through a FileChannel when the buffer fills or on the periodic flush, instead of one
+ * open/write/close per line. Live tails get the flushed bytes pushed to them, so watching a
+ * launch never re-reads the file; only a new subscriber's catch-up reads from its offset.
+ * Every subscriber has its own bounded queue, drained in order on the tail pool; one that
+ * falls too far behind is closed and resumes by reconnecting from its last offset.
+ * Files are rotated by size, and rotated parts and previous runs are gzip-compressed.
+ * Offsets are logical per run: they keep counting across rotations.
+ */
+@Slf4j
+@Component
+public class LaunchLogWriter {
+
+    /**
+     * Called on a tail thread, one call at a time per listener. Each chunk ends on a line break.
+     */
+    public interface TailListener {
+        void onData(byte[] data, long endOffset);
+
+        void onClosed();
+    }
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    @Value("${flow.launch.log.dir:logs/launch}")
+    private String logDir;
+
+    // Per-launch write buffer; memory is bounded by this times the launches running at once
+    @Value("${flow.launch.log.buffer-bytes:65536}")
+    private int bufferBytes;
+
+    @Value("${flow.launch.log.flush-millis:200}")
+    private long flushMillis;
+
+    @Value("${flow.launch.log.max-file-bytes:52428800}")
+    private long maxFileBytes;
+
+    // Compressed archives (rotated parts and previous runs) kept per flow config
+    @Value("${flow.launch.log.keep-archives:10}")
+    private int keepArchives;
+
+    // Live bytes waiting for one subscriber; beyond this the subscriber is closed
+    @Value("${flow.launch.log.subscriber-queue-bytes:1048576}")
+    private long subscriberQueueBytes;
+
+    @Value("${flow.launch.log.tail-threads:8}")
+    private int tailThreads;
+
+    private Path directory;
+    private final Map<Long, LaunchLog> activeLogs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher =
+        Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "LaunchLogFlusher"));
+    private final ExecutorService compressor =
+        Executors.newSingleThreadExecutor(r -> new Thread(r, "LaunchLogCompressor"));
+    // Delivers to tail listeners off the writer's lock, so a slow client never blocks a launch
+    private ExecutorService tailDispatcher;
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Paths.get(logDir);
+        Files.createDirectories(directory);
+        AtomicInteger tailCount = new AtomicInteger();
+        tailDispatcher = Executors.newFixedThreadPool(tailThreads,
+            r -> new Thread(r, "LaunchLogTail-" + tailCount.incrementAndGet()));
+        flusher.scheduleWithFixedDelay(this::flushAll, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start the log of a new run. The previous run's log is archived (compressed), not cleared.
+     */
+    public void open(long id) {
+        close(id);
+        Path active = activePath(id);
+        try {
+            if (Files.exists(active) && Files.size(active) > 0) {
+                archive(id, active);
+            }
+            activeLogs.put(id, new LaunchLog(id, FileChannel.open(active,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open launch log for flow config " + id, e);
+        }
+    }
+
+    public void append(long id, String message) {
+        byte[] line = (LocalDateTime.now().format(TIMESTAMP) + " " + message + System.lineSeparator())
+            .getBytes(StandardCharsets.UTF_8);
+        LaunchLog launchLog = activeLogs.get(id);
+        try {
+            if (launchLog != null) {
+                launchLog.append(line);
+            } else {
+                // Outside a started run (e.g. a recovered flow): straight to the file, nothing stays open
+                Files.write(activePath(id), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write launch log for flow config {}: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * Flush and close the run's log; live tails are completed
+     */
+    public void close(long id) {
+        LaunchLog launchLog = activeLogs.remove(id);
+        if (launchLog != null) {
+            launchLog.close();
+        }
+    }
+
+    /**
+     * Send everything from the logical offset onwards to the listener, then keep pushing new
+     * bytes until the run's log is closed. For a run that is not active the listener gets the
+     * file content and is closed right away.
+     */
+    public void tail(long id, long offset, TailListener listener) {
+        LaunchLog launchLog = activeLogs.get(id);
+        Tail tail = launchLog != null ? launchLog.subscribe(offset, listener) : null;
+        if (tail == null) {
+            // Not running - serve what is on disk
+            tail = new Tail(id, listener, openForCatchUp(id), Math.max(0, offset), 0);
+            tail.end();
+        }
+        tail.schedule();
+    }
+
+    public void removeListener(long id, TailListener listener) {
+        LaunchLog launchLog = activeLogs.get(id);
+        if (launchLog != null) {
+            launchLog.tails.removeIf(tail -> tail.listener == listener && tail.cancel());
+        }
+    }
+
+    private void flushAll() {
+        for (LaunchLog launchLog : activeLogs.values()) {
+            try {
+                launchLog.flush();
+            } catch (IOException e) {
+                log.warn("Failed to flush launch log for flow config {}: {}", launchLog.id, e.getMessage());
+            }
+        }
+    }
+
+    // Opened, not read, when subscribing; stays readable after the file is rotated away
+    private FileChannel openForCatchUp(long id) {
+        try {
+            return FileChannel.open(activePath(id), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read launch log for flow config {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path activePath(long id) {
+        return directory.resolve("flow-" + id + ".log");
+    }
+
+    private void archive(long id, Path file) throws IOException {
+        Path archived = directory.resolve("flow-" + id + "-" + System.currentTimeMillis() + ".log");
+        Files.move(file, archived, StandardCopyOption.REPLACE_EXISTING);
+        compressor.execute(() -> compress(id, archived));
+    }
+
+    private void compress(long id, Path file) {
+        Path gz = file.resolveSibling(file.getFileName() + ".gz");
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz), 65536)) {
+            in.transferTo(0, in.size(), Channels.newChannel(out));
+        } catch (IOException e) {
+            log.warn("Failed to compress launch log {}: {}", file, e.getMessage());
+            return;
+        }
+        try {
+            Files.delete(file);
+            pruneArchives(id);
+        } catch (IOException e) {
+            log.warn("Failed to clean up launch log {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void pruneArchives(long id) throws IOException {
+        List<Path> archives = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "flow-" + id + "-*.log.gz")) {
+            stream.forEach(archives::add);
+        }
+        if (archives.size() <= keepArchives) {
+            return;
+        }
+        archives.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        for (Path old : archives.subList(0, archives.size() - keepArchives)) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        new ArrayList<>(activeLogs.keySet()).forEach(this::close);
+        compressor.shutdown();
+        tailDispatcher.shutdown();
+    }
+
+    private final class LaunchLog {
+        private final long id;
+        private final ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+        private final List<Tail> tails = new CopyOnWriteArrayList<>();
+        private FileChannel channel;
+        // Bytes of this run already rotated out to compressed parts
+        private long baseOffset;
+        private long fileSize;
+        private boolean closed;
+
+        private LaunchLog(long id, FileChannel channel) throws IOException {
+            this.id = id;
+            this.channel = channel;
+            this.fileSize = channel.size();
+        }
+
+        private synchronized void append(byte[] line) throws IOException {
+            if (closed) {
+                return;
+            }
+            if (line.length > buffer.remaining()) {
+                flush();
+            }
+            if (line.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(line)); // Oversized line bypasses the buffer
+            } else {
+                buffer.put(line);
+            }
+        }
+
+        private synchronized void flush() throws IOException {
+            if (closed || buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+            byte[] copy = tails.isEmpty() ? null : new byte[data.remaining()];
+            if (copy != null) {
+                data.duplicate().get(copy);
+            }
+            while (data.hasRemaining()) {
+                fileSize += channel.write(data);
+            }
+            if (copy != null) {
+                long endOffset = baseOffset + fileSize;
+                for (Tail tail : tails) {
+                    tail.offer(copy, endOffset);
+                }
+            }
+            if (fileSize >= maxFileBytes) {
+                rotate();
+            }
+        }
+
+        private void rotate() throws IOException {
+            channel.close();
+            archive(id, activePath(id));
+            baseOffset += fileSize;
+            fileSize = 0;
+            channel = FileChannel.open(activePath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        /*
+         * Null if the log closed in the meantime and the caller should read the file instead.
+         * Only registers and opens the file under the lock; the catch-up is read by the tail itself.
+         */
+        private synchronized Tail subscribe(long offset, TailListener listener) {
+            if (closed) {
+                return null;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                log.warn("Failed to flush launch log for flow config {}: {}", id, e.getMessage());
+            }
+            // Older bytes are already in a compressed part; the tail starts at the current file
+            long from = Math.min(Math.max(0, offset - baseOffset), fileSize);
+            Tail tail = new Tail(id, listener, openForCatchUp(id), from, baseOffset);
+            tail.catchUpEnd = fileSize;
+            tails.add(tail);
+            return tail;
+        }
+
+        private synchronized void close() {
+            try {
+                flush();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close launch log for flow config {}: {}", id, e.getMessage());
+            }
+            closed = true;
+            for (Tail tail : tails) {
+                tail.end();
+            }
+            tails.clear();
+        }
+    }
+
+    private static final class Chunk {
+        private final byte[] data;
+        private final long endOffset;
+
+        private Chunk(byte[] data, long endOffset) {
+            this.data = data;
+            this.endOffset = endOffset;
+        }
+    }
+
+    /**
+     * One subscriber: first the catch-up from the file, streamed a chunk at a time, then the
+     * live chunks queued meanwhile. Runs on the tail pool, never more than one run at a time.
+     */
+    private final class Tail implements Runnable {
+        private static final int CATCH_UP_CHUNK = 65536;
+        // Chunks delivered per run before yielding the thread to other subscribers
+        private static final int BATCH = 16;
+
+        private final long id;
+        private final TailListener listener;
+        private final long baseOffset;
+        private final Queue<Chunk> live = new ConcurrentLinkedQueue<>();
+        private final AtomicLong queuedBytes = new AtomicLong();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private FileChannel catchUp;
+        private long catchUpPosition;
+        private long catchUpEnd = Long.MAX_VALUE;
+        private volatile boolean ended;
+        private volatile boolean dropped;
+        private volatile boolean cancelled;
+
+        private Tail(long id, TailListener listener, FileChannel catchUp, long from, long baseOffset) {
+            this.id = id;
+            this.listener = listener;
+            this.catchUp = catchUp;
+            this.catchUpPosition = from;
+            this.baseOffset = baseOffset;
+        }
+
+        private void offer(byte[] data, long endOffset) {
+            if (dropped) {
+                return;
+            }
+            if (queuedBytes.addAndGet(data.length) > subscriberQueueBytes) {
+                log.info("Closing slow launch log subscriber of flow config {}", id);
+                dropped = true;
+            } else {
+                live.add(new Chunk(data, endOffset));
+            }
+            schedule();
+        }
+
+        // The log is complete; the subscriber is closed once everything queued is delivered
+        private void end() {
+            ended = true;
+            schedule();
+        }
+
+        // The client went away - stop without calling back; always true, for removeIf
+        private boolean cancel() {
+            cancelled = true;
+            dropped = true;
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    tailDispatcher.execute(this);
+                } catch (RejectedExecutionException e) {
+                    closeCatchUp(); // Shutting down
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < BATCH && !dropped; i++) {
+                    if (catchUp != null) {
+                        readCatchUp();
+                        continue;
+                    }
+                    Chunk chunk = live.poll();
+                    if (chunk == null) {
+                        break;
+                    }
+                    queuedBytes.addAndGet(-chunk.data.length);
+                    listener.onData(chunk.data, chunk.endOffset);
+                }
+            } catch (Exception e) {
+                log.debug("Launch log subscriber of flow config {} failed: {}", id, e.getMessage());
+                dropped = true;
+            }
+
+            if (dropped || (ended && catchUp == null && live.isEmpty())) {
+                // Stays scheduled for good: nothing runs for this tail again
+                closeCatchUp();
+                if (!cancelled) {
+                    listener.onClosed();
+                }
+                LaunchLog launchLog = activeLogs.get(id);
+                if (launchLog != null) {
+                    launchLog.tails.remove(this);
+                }
+                return;
+            }
+            scheduled.set(false);
+            // Work that arrived while this run still counted as scheduled
+            if (ended || catchUp != null || !live.isEmpty()) {
+                schedule();
+            }
+        }
+
+        // One chunk of the catch-up, cut at the last line break so no character is split
+        private void readCatchUp() throws IOException {
+            long remaining = catchUpEnd - catchUpPosition;
+            ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CATCH_UP_CHUNK, Math.max(0, remaining)));
+            while (chunk.hasRemaining()) {
+                if (catchUp.read(chunk, catchUpPosition + chunk.position()) < 0) {
+                    break;
+                }
+            }
+            int end = chunk.position();
+            if (end == 0) {
+                closeCatchUp();
+                return;
+            }
+            if (end < remaining) {
+                int cut = end;
+                while (cut > 0 && chunk.get(cut - 1) != '\n') {
+                    cut--;
+                }
+                if (cut > 0) {
+                    end = cut; // Otherwise a single line longer than the chunk goes out as is
+                }
+            }
+            catchUpPosition += end;
+            listener.onData(Arrays.copyOf(chunk.array(), end), baseOffset + catchUpPosition);
+            if (catchUpPosition >= catchUpEnd) {
+                closeCatchUp();
+            }
+        }
+
+        private void closeCatchUp() {
+            if (catchUp == null) {
+                return;
+            }
+            try {
+                catchUp.close();
+            } catch (IOException e) {
+                log.debug("Failed to close launch log catch-up of flow config {}: {}", id, e.getMessage());
+            }
+            catchUp = null;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Transactional outbox for launch side effects (notifications, e-mail). Events are written in
+ * the same short transaction as the state change that causes them and delivered afterwards by
+ * OutboxRelay, so no remote call ever runs inside a launch transaction and a committed state
+ * change never loses its notification.
+ */
+@Component
+@RequiredArgsConstructor
+public class LaunchOutbox {
+
+    public static final String LAUNCH_FINISHED = "LAUNCH_FINISHED";
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    // Only meaningful together with a state change - refuse to run outside its transaction
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(long flowConfigId, String eventType, String payload) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxEventRepository.save(OutboxEvent.builder()
+                .flowConfigId(flowConfigId)
+                .eventType(eventType)
+                .payload(payload)
+                .status(OutboxEvent.Status.PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build());
+    }
+}
+
+
+/**
+ * Delivery side of an outbox event type. Must tolerate redelivery: an event is retried
+ * until handle() returns normally, or marked DEAD after flow.outbox.max-attempts.
+ */
+public interface OutboxHandler {
+
+    String eventType();
+
+    void handle(OutboxEvent event) throws Exception;
+}
+
+
+/**
+ * Drains outbox_event in short claim / mark transactions; handlers run with no transaction open.
+ * Failed deliveries back off exponentially; after max-attempts the event is marked DEAD and no
+ * longer claimed. Processed events are kept for the retention period, then purged in batches.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final Map<String, List<OutboxHandler>> handlersByType;
+
+    @Value("${flow.outbox.batch-size:50}")
+    private int batchSize;
+
+    // How long a claimed event stays with this relay before another one may retry it
+    @Value("${flow.outbox.lock-seconds:60}")
+    private long lockSeconds;
+
+    @Value("${flow.outbox.max-backoff-seconds:600}")
+    private long maxBackoffSeconds;
+
+    // Deliveries before an event is given up as DEAD (with the capped backoff, roughly a day at 150)
+    @Value("${flow.outbox.max-attempts:150}")
+    private int maxAttempts;
+
+    @Value("${flow.outbox.retention:P7D}")
+    private Duration retention;
+
+    @Value("${flow.outbox.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, List<OutboxHandler> handlers) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.handlersByType = handlers.stream().collect(Collectors.groupingBy(OutboxHandler::eventType));
+    }
+
+    @Scheduled(fixedDelayString = "${flow.outbox.poll-millis:1000}")
+    public void drain() {
+        try {
+            List<OutboxEvent> batch;
+            do {
+                LocalDateTime now = LocalDateTime.now();
+                batch = outboxEventRepository.claimDue(now, now.plusSeconds(lockSeconds), batchSize);
+                batch.forEach(this::deliver);
+            } while (batch.size() == batchSize);
+        } catch (Exception e) {
+            log.error("Error draining outbox", e);
+        }
+    }
+
+    /**
+     * Delete processed events older than the retention; pending, failing and dead ones are never touched
+     */
+    @Scheduled(fixedDelayString = "${flow.outbox.purge-millis:3600000}")
+    public void purgeProcessed() {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+            int deleted;
+            int total = 0;
+            do {
+                deleted = outboxEventRepository.deleteProcessedBefore(cutoff, purgeBatchSize);
+                total += deleted;
+            } while (deleted == purgeBatchSize);
+            if (total > 0) {
+                log.info("Purged {} processed outbox events older than {}", total, cutoff);
+            }
+        } catch (Exception e) {
+            log.error("Error purging processed outbox events", e);
+        }
+    }
+
+    private void deliver(OutboxEvent event) {
+        try {
+            for (OutboxHandler handler : handlersByType.getOrDefault(event.getEventType(), Collections.emptyList())) {
+                handler.handle(event);
+            }
+            outboxEventRepository.markProcessed(event.getId(), LocalDateTime.now());
+        } catch (Exception e) {
+            String error = e.getMessage() != null && e.getMessage().length() > 2000
+                    ? e.getMessage().substring(0, 2000)
+                    : e.getMessage();
+            // attempts already counts this delivery (incremented by the claim)
+            if (event.getAttempts() >= maxAttempts) {
+                outboxEventRepository.markDead(event.getId(), error);
+                log.error("Outbox event {} ({}) for flow config {} is DEAD after {} attempts: {}",
+                          event.getId(), event.getEventType(), event.getFlowConfigId(), event.getAttempts(), e.getMessage());
+                return;
+            }
+            // Exponential backoff, capped
+            long backoff = Math.min(maxBackoffSeconds, 1L << Math.min(event.getAttempts(), 20));
+            outboxEventRepository.markFailed(event.getId(), LocalDateTime.now().plusSeconds(backoff), error);
+            log.warn("Outbox event {} ({}) for flow config {} failed, attempt {}, retry in {}s: {}",
+                     event.getId(), event.getEventType(), event.getFlowConfigId(), event.getAttempts(), backoff, e.getMessage());
+        }
+    }
+}
+
+
+/**
+ * Mails the flow's recipients once a launch has finished (opt-in)
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "flow.launch.notify-email", havingValue = "true")
+public class LaunchFinishedEmailHandler implements OutboxHandler {
+
+    private final EmailService emailService;
+
+    @Override
+    public String eventType() {
+        return LaunchOutbox.LAUNCH_FINISHED;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        emailService.sendFlowConfigEmails(event.getFlowConfigId());
+    }
+}
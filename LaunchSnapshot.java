@@ -0,0 +1,77 @@
+/**
+ * Everything a launch reads from its flow config, loaded once at the start of the run.
+ * Immutable and detached from the persistence context, so stages and executors can read it
+ * from any thread without re-querying the entity or touching lazy collections.
+ */
+@Value
+@Builder
+public class LaunchSnapshot {
+
+    long id;
+    List<String> targetDevices;
+
+    boolean simulationTest;
+    boolean bypassSimulationCache;
+    List<String> switchConfigurations;
+
+    List<String> preCheckCommands;
+
+    // Null when the flow has no ServiceVerificationAfter - post-check and result-diff are skipped
+    List<String> postCheckCommands;
+    List<NormalDeterminationCriteriaDTO> postCheckCriteria;
+
+    public boolean hasPostCheck() {
+        return postCheckCriteria != null;
+    }
+}
+
+
+/**
+ * Builds a LaunchSnapshot with one fetch plan: the config, its to-one children and target
+ * devices in a single join, then the remaining collections inside the same read-only
+ * transaction - a fixed handful of queries per run instead of a reload per stage.
+ */
+@Component
+@RequiredArgsConstructor
+public class LaunchSnapshotLoader {
+
+    private final FlowConfigRepository flowConfigRepository;
+
+    @Transactional(readOnly = true)
+    public Optional<LaunchSnapshot> load(long id) {
+        return flowConfigRepository.findLaunchGraphById(id).map(this::snapshot);
+    }
+
+    private LaunchSnapshot snapshot(FlowConfig config) {
+        ConfigSettings settings = config.getConfigSettings();
+        ServiceVerificationBefore before = config.getServiceVerificationBefore();
+        ServiceVerificationAfter after = config.getServiceVerificationAfter();
+
+        return LaunchSnapshot.builder()
+                .id(config.getId())
+                .targetDevices(copy(config.getTargetDevices()))
+                .simulationTest(settings != null && settings.isSimulationTest())
+                .bypassSimulationCache(settings != null && settings.isBypassSimulationCache())
+                .switchConfigurations(settings != null ? copy(settings.getSwitchConfiguration()) : Collections.emptyList())
+                .preCheckCommands(before != null ? copy(before.getServiceCheckCommands()) : Collections.emptyList())
+                .postCheckCommands(after != null ? copy(after.getServiceCheckCommands()) : null)
+                .postCheckCriteria(after != null ? criteria(after.getNormalDeterminationCriteria()) : null)
+                .build();
+    }
+
+    private List<NormalDeterminationCriteriaDTO> criteria(List<NormalDeterminationCriteria> criteria) {
+        if (criteria == null) {
+            return Collections.emptyList();
+        }
+        return criteria.stream()
+                .map(n -> NormalDeterminationCriteriaDTO.builder()
+                        .criteria(n.getCriteria())
+                        .condition(n.getCondition())
+                        .build())
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+    }
+
+    private static List<String> copy(List<String> values) {
+        return values == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(values));
+    }
+}
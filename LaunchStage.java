@@ -0,0 +1,179 @@
+/**
+ * One step of a launch workflow (SPI). Implementations are Spring beans looked up by name();
+ * LaunchStageEngine does the status column, log line, heartbeat and metrics around execute(),
+ * so a stage only contains its own work.
+ */
+public interface LaunchStage {
+
+    // Graph key and metrics tag, e.g. "pre_check"
+    String name();
+
+    // Used in the per-flow log, e.g. "Pre-Check"
+    String displayName();
+
+    /**
+     * Stage status column on flow_config, if the stage has one; written through LaunchStatusJournal
+     */
+    default LaunchStatusJournal.Column statusColumn() {
+        return null;
+    }
+
+    /**
+     * Whether an attempt interrupted inside this stage may simply run it again. A stage
+     * with side effects on devices returns false; on resume it then only runs the devices
+     * that have no checkpoint yet.
+     */
+    default boolean idempotent() {
+        return true;
+    }
+
+    StageOutcome execute(LaunchContext context) throws Exception;
+
+    enum StageOutcome {
+        DONE,
+        // Nothing to do for this flow (status NOT_EXECUTED); dependents still run
+        NOT_APPLICABLE,
+        // Nothing to do here or in any stage downstream of it; all of them end NOT_EXECUTED
+        SKIP_DOWNSTREAM
+    }
+}
+
+
+/**
+ * What one launch run shares between its stages: the load-once snapshot, the outcome
+ * map the engine fills as stages finish, stage outputs, what an earlier interrupted
+ * attempt already completed, and the run's cancellation token.
+ */
+public class LaunchContext {
+
+    @Getter
+    private final LaunchSnapshot snapshot;
+    @Getter
+    private final Map<String, LaunchStage.StageOutcome> outcomes = new ConcurrentHashMap<>();
+    @Getter
+    private final LaunchCancellation.Token cancellation;
+    private final LaunchCheckpointStore.Resume resume;
+    private final Map<String, Map<String, String>> outputs = new ConcurrentHashMap<>();
+
+    public LaunchContext(LaunchSnapshot snapshot, LaunchCheckpointStore.Resume resume,
+                         LaunchCancellation.Token cancellation) {
+        this.snapshot = snapshot;
+        this.resume = resume;
+        this.cancellation = cancellation;
+        resume.getOutputs().forEach((stage, values) -> outputs.put(stage, new ConcurrentHashMap<>(values)));
+    }
+
+    public long getId() {
+        return snapshot.getId();
+    }
+
+    public List<String> getDevices() {
+        return snapshot.getTargetDevices();
+    }
+
+    public String getFingerprint() {
+        return resume.getFingerprint();
+    }
+
+    // Outcome recorded by an earlier attempt, or null if the stage still has to run
+    public LaunchStage.StageOutcome completedOutcome(String stage) {
+        return resume.getCompletedStages().get(stage);
+    }
+
+    public Set<String> completedDevices(String stage) {
+        return resume.getCompletedDevices().getOrDefault(stage, Collections.emptySet());
+    }
+
+    /**
+     * Record a stage output (e.g. a ConfigGen device_configuration_id); it is checkpointed
+     * with the stage and visible to later stages, also after a resume
+     */
+    public void putOutput(String stage, String key, String value) {
+        outputs.computeIfAbsent(stage, s -> new ConcurrentHashMap<>()).put(key, value);
+    }
+
+    public String getOutput(String stage, String key) {
+        return outputsOf(stage).get(key);
+    }
+
+    public Map<String, String> outputsOf(String stage) {
+        return outputs.getOrDefault(stage, Collections.emptyMap());
+    }
+}
+
+
+/**
+ * Stage graph of a workflow: stage names and the stages each one waits for.
+ * Built once (constants); build() rejects unknown dependencies and cycles.
+ */
+public class LaunchWorkflow {
+
+    private final String name;
+    private final Map<String, Set<String>> dependencies;
+    private final List<String> order;
+
+    private LaunchWorkflow(String name, Map<String, Set<String>> dependencies, List<String> order) {
+        this.name = name;
+        this.dependencies = dependencies;
+        this.order = order;
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Set<String> dependenciesOf(String stage) {
+        return dependencies.get(stage);
+    }
+
+    // Topological order - every stage comes after the stages it depends on
+    public List<String> getOrder() {
+        return order;
+    }
+
+    public static class Builder {
+        private final String name;
+        private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder stage(String stage, String... dependsOn) {
+            dependencies.put(stage, new LinkedHashSet<>(Arrays.asList(dependsOn)));
+            return this;
+        }
+
+        public LaunchWorkflow build() {
+            List<String> order = new ArrayList<>();
+            Set<String> visiting = new HashSet<>();
+            for (String stage : dependencies.keySet()) {
+                visit(stage, visiting, order);
+            }
+            Map<String, Set<String>> frozen = new LinkedHashMap<>();
+            dependencies.forEach((stage, deps) -> frozen.put(stage, Collections.unmodifiableSet(deps)));
+            return new LaunchWorkflow(name, Collections.unmodifiableMap(frozen), Collections.unmodifiableList(order));
+        }
+
+        private void visit(String stage, Set<String> visiting, List<String> order) {
+            if (order.contains(stage)) {
+                return;
+            }
+            if (!dependencies.containsKey(stage)) {
+                throw new IllegalStateException("Workflow " + name + " depends on undeclared stage " + stage);
+            }
+            if (!visiting.add(stage)) {
+                throw new IllegalStateException("Workflow " + name + " has a dependency cycle through " + stage);
+            }
+            for (String dependency : dependencies.get(stage)) {
+                visit(dependency, visiting, order);
+            }
+            visiting.remove(stage);
+            order.add(stage);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Runs a LaunchWorkflow for one flow. A stage starts as soon as every stage it depends on
+ * is done, so independent stages overlap; the first failure stops new stages from starting,
+ * waits for the ones in flight and is rethrown to the caller. Cancelling the launch does the
+ * same, interrupts the stages in flight and ends with a LaunchCancelledException.
+ */
+@Slf4j
+@Component
+public class LaunchStageEngine {
+
+    private final Map<String, LaunchStage> stagesByName = new HashMap<>();
+    private final FlowConfigService flowConfigService;
+    private final LaunchStatusJournal launchStatusJournal;
+    private final LaunchCheckpointStore launchCheckpointStore;
+    private final FlowHeartbeatRegistry flowHeartbeatRegistry;
+    private final FlowSchedulerMetrics flowSchedulerMetrics;
+
+    // Bounded; when full a ready stage runs on the thread that made it ready
+    private final TaskExecutor stageExecutor;
+    // Heartbeats of stages in flight, whichever thread runs them
+    private final ScheduledExecutorService stageBeats =
+        Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "LaunchStageBeat"));
+
+    public LaunchStageEngine(List<LaunchStage> stages,
+                             @Qualifier("launchStageExecutor") TaskExecutor stageExecutor,
+                             FlowConfigService flowConfigService,
+                             LaunchStatusJournal launchStatusJournal,
+                             LaunchCheckpointStore launchCheckpointStore,
+                             FlowHeartbeatRegistry flowHeartbeatRegistry,
+                             FlowSchedulerMetrics flowSchedulerMetrics) {
+        for (LaunchStage stage : stages) {
+            if (stagesByName.put(stage.name(), stage) != null) {
+                throw new IllegalStateException("Duplicate launch stage " + stage.name());
+            }
+        }
+        this.stageExecutor = stageExecutor;
+        this.flowConfigService = flowConfigService;
+        this.launchStatusJournal = launchStatusJournal;
+        this.launchCheckpointStore = launchCheckpointStore;
+        this.flowHeartbeatRegistry = flowHeartbeatRegistry;
+        this.flowSchedulerMetrics = flowSchedulerMetrics;
+    }
+
+    public void run(LaunchWorkflow workflow, LaunchContext context) throws Exception {
+        for (String name : workflow.getOrder()) {
+            if (!stagesByName.containsKey(name)) {
+                throw new IllegalStateException("No LaunchStage bean named " + name + " for workflow " + workflow.getName());
+            }
+        }
+
+        AtomicBoolean aborted = new AtomicBoolean();
+        Set<Thread> stageThreads = ConcurrentHashMap.newKeySet();
+        Map<String, CompletableFuture<LaunchStage.StageOutcome>> futures = new LinkedHashMap<>();
+        LaunchCancellation.Token cancellation = context.getCancellation();
+        // Registered before the first submit: with a full pool a stage can already run on this thread below
+        try (LaunchCancellation.Registration ignored = cancellation.onCancel(() -> {
+            aborted.set(true);
+            stageThreads.forEach(Thread::interrupt);
+        })) {
+            awaitBeating(startStages(workflow, context, aborted, stageThreads, futures), context.getId());
+        } catch (InterruptedException e) {
+            // Cancelled or declared dead by the scheduler - pass it on to the stages and wait for them,
+            // so nothing of this attempt writes after the scheduler requeued the flow
+            aborted.set(true);
+            stageThreads.forEach(Thread::interrupt);
+            awaitSettled(CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])));
+            throw e;
+        } catch (ExecutionException e) {
+            // Whatever the interrupted stages threw, the cause is the cancel
+            cancellation.throwIfCancelled();
+            throw firstFailure(futures.values());
+        }
+        cancellation.throwIfCancelled();
+    }
+
+    private CompletableFuture<Void> startStages(LaunchWorkflow workflow, LaunchContext context, AtomicBoolean aborted,
+                                                Set<Thread> stageThreads,
+                                                Map<String, CompletableFuture<LaunchStage.StageOutcome>> futures) {
+        for (String name : workflow.getOrder()) {
+            Set<String> dependencies = workflow.dependenciesOf(name);
+            CompletableFuture<?>[] upstream = dependencies.stream().map(futures::get).toArray(CompletableFuture[]::new);
+            futures.put(name, CompletableFuture.allOf(upstream).thenApplyAsync(ignored -> {
+                context.getCancellation().throwIfCancelled();
+                if (aborted.get()) {
+                    throw new CancellationException(name + " not started, launch aborted");
+                }
+                LaunchStage.StageOutcome restored = context.completedOutcome(name);
+                if (restored != null) {
+                    // Finished by an earlier attempt - resume after it
+                    context.getOutcomes().put(name, restored);
+                    flowConfigService.writeToLog(context.getId(),
+                        stagesByName.get(name).displayName() + " already completed by an earlier attempt.");
+                    return restored;
+                }
+                if (dependencies.stream().anyMatch(d -> context.getOutcomes().get(d) == LaunchStage.StageOutcome.SKIP_DOWNSTREAM)) {
+                    skip(stagesByName.get(name), context);
+                    return LaunchStage.StageOutcome.SKIP_DOWNSTREAM;
+                }
+                stageThreads.add(Thread.currentThread());
+                try {
+                    return runStage(stagesByName.get(name), context);
+                } catch (Exception e) {
+                    aborted.set(true);
+                    throw new CompletionException(e);
+                } finally {
+                    stageThreads.remove(Thread.currentThread());
+                }
+            }, stageExecutor));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]));
+    }
+
+    /*
+     * The stage beats for itself while it runs. With a full stage pool it runs on the launch or
+     * an upstream stage thread, which is not in awaitBeating then, so those beats would be missing.
+     */
+    private LaunchStage.StageOutcome runStage(LaunchStage stage, LaunchContext context) throws Exception {
+        long id = context.getId();
+        flowHeartbeatRegistry.beat(id);
+        long intervalMillis = FlowHeartbeatRegistry.BEAT_INTERVAL.toMillis();
+        ScheduledFuture<?> beating = stageBeats.scheduleWithFixedDelay(() -> flowHeartbeatRegistry.beat(id),
+                                                                        intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            flowConfigService.writeToLog(id, "Starting " + stage.displayName() + "...");
+            journal(stage, id, FlowConfig.Status.IN_PROGRESS);
+
+            LaunchStage.StageOutcome outcome = stage.execute(context);
+            context.getOutcomes().put(stage.name(), outcome);
+            launchCheckpointStore.stageDone(context, stage.name(), outcome);
+
+            if (outcome == LaunchStage.StageOutcome.DONE) {
+                journal(stage, id, FlowConfig.Status.SUCCESS);
+                flowConfigService.writeToLog(id, stage.displayName() + " completed successfully.");
+            } else {
+                journal(stage, id, FlowConfig.Status.NOT_EXECUTED);
+                flowConfigService.writeToLog(id, stage.displayName() + " skipped.");
+            }
+            success = true;
+            return outcome;
+        } catch (Exception ex) {
+            if (context.getCancellation().isCancelled()) {
+                journal(stage, id, FlowConfig.Status.CANCELLED);
+                flowConfigService.writeToLog(id, stage.displayName() + " cancelled.");
+                throw ex;
+            }
+            journal(stage, id, FlowConfig.Status.FAIL);
+            flowConfigService.writeToLog(id, stage.displayName() + " failed: " + ex.getMessage());
+            throw ex;
+        } finally {
+            beating.cancel(false);
+            flowSchedulerMetrics.recordStage(stage.name(), start, success);
+        }
+    }
+
+    private void skip(LaunchStage stage, LaunchContext context) {
+        context.getOutcomes().put(stage.name(), LaunchStage.StageOutcome.SKIP_DOWNSTREAM);
+        journal(stage, context.getId(), FlowConfig.Status.NOT_EXECUTED);
+        flowConfigService.writeToLog(context.getId(), stage.displayName() + " skipped.");
+    }
+
+    /*
+     * Beat while stages are in flight, also between them, so a long device push does not look
+     * stalled. A hung stage still ends through its own timeouts or the cancel interrupt.
+     */
+    private void awaitBeating(CompletableFuture<Void> all, long id) throws InterruptedException, ExecutionException {
+        long intervalMillis = FlowHeartbeatRegistry.BEAT_INTERVAL.toMillis();
+        while (true) {
+            try {
+                all.get(intervalMillis, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                flowHeartbeatRegistry.beat(id);
+            }
+        }
+    }
+
+    // Stages interrupted above end through their interrupt or their own call timeouts
+    private void awaitSettled(CompletableFuture<Void> all) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                all.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | CancellationException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stageBeats.shutdownNow();
+    }
+
+    private void journal(LaunchStage stage, long id, FlowConfig.Status status) {
+        if (stage.statusColumn() != null) {
+            launchStatusJournal.record(id, stage.statusColumn(), status);
+        }
+    }
+
+    // The stage that actually failed, not the dependents that were cancelled because of it
+    private Exception firstFailure(Collection<CompletableFuture<LaunchStage.StageOutcome>> futures) {
+        Exception cancelled = null;
+        for (CompletableFuture<LaunchStage.StageOutcome> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof CancellationException) {
+                    cancelled = (Exception) cause;
+                } else if (cause instanceof Exception) {
+                    return (Exception) cause;
+                } else {
+                    throw e;
+                }
+            } catch (CancellationException e) {
+                cancelled = e;
+            }
+        }
+        return cancelled != null ? cancelled : new IllegalStateException("Launch workflow failed");
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Stages of the launch-all workflow. Each is a LaunchStage bean; LaunchStageEngine handles
+ * status columns, logging, heartbeat and metrics around them.
+ */
+
+@Component
+@RequiredArgsConstructor
+public class SimulationStage implements LaunchStage {
+
+    private final SimulationResultCache simulationResultCache;
+
+    @Override
+    public String name() {
+        return "simulation";
+    }
+
+    @Override
+    public String displayName() {
+        return "Simulation test";
+    }
+
+    @Override
+    public StageOutcome execute(LaunchContext context) {
+        LaunchSnapshot snapshot = context.getSnapshot();
+        if (!snapshot.isSimulationTest()) {
+            return StageOutcome.NOT_APPLICABLE;
+        }
+
+        List<String> switchConfigurations = snapshot.getSwitchConfigurations();
+        if (switchConfigurations.isEmpty()) {
+            throw new IllegalStateException("Missing switch configurations for simulation.");
+        }
+
+        String status = simulationResultCache.simulate(switchConfigurations, snapshot.isBypassSimulationCache());
+        if (!"SUCCESS".equals(status)) {
+            throw new IllegalStateException("Simulation failed. Status: " + status);
+        }
+        return StageOutcome.DONE;
+    }
+}
+
+
+@Component
+@RequiredArgsConstructor
+public class PreCheckStage implements LaunchStage {
+
+    private final FlowConfigLaunchExecutor launchExecutor;
+
+    @Override
+    public String name() {
+        return "pre_check";
+    }
+
+    @Override
+    public String displayName() {
+        return "Pre-Check";
+    }
+
+    @Override
+    public LaunchStatusJournal.Column statusColumn() {
+        return LaunchStatusJournal.Column.PRE_CHECK;
+    }
+
+    @Override
+    public StageOutcome execute(LaunchContext context) {
+        launchExecutor.runPreCheck(context.getSnapshot(), "2");
+        return StageOutcome.DONE;
+    }
+}
+
+
+@Component
+@RequiredArgsConstructor
+public class SwitchConfigStage implements LaunchStage {
+
+    private final FlowConfigLaunchExecutor launchExecutor;
+    private final DeviceFanOut deviceFanOut;
+
+    @Override
+    public String name() {
+        return "switch_config";
+    }
+
+    @Override
+    public String displayName() {
+        return "Switch Config Update";
+    }
+
+    @Override
+    public LaunchStatusJournal.Column statusColumn() {
+        return LaunchStatusJournal.Column.CONFIG_SETTING;
+    }
+
+    // Pushes configuration to devices - a resumed attempt must not push twice
+    @Override
+    public boolean idempotent() {
+        return false;
+    }
+
+    @Override
+    public StageOutcome execute(LaunchContext context) {
+        long id = context.getId();
+        ConfigApplyService.ApplyBatcher batcher =
+                launchExecutor.switchConfigBatcher(context.getSnapshot().getSwitchConfigurations());
+        // Devices are pushed in (model, vendor) ConfigGen batches, but each keeps its own result,
+        // so a failure or retry is scoped to that device; its device_configuration_id is kept
+        // per device for the later stages
+        deviceFanOut.runOrWhole(context, this,
+                device -> context.putOutput(name(), device,
+                        launchExecutor.updateSwitchConfig(id, device, batcher)),
+                () -> launchExecutor.updateSwitchConfig(context.getSnapshot()));
+        return StageOutcome.DONE;
+    }
+}
+
+
+@Component
+@RequiredArgsConstructor
+public class PostCheckStage implements LaunchStage {
+
+    private final FlowConfigLaunchExecutor launchExecutor;
+
+    @Override
+    public String name() {
+        return "post_check";
+    }
+
+    @Override
+    public String displayName() {
+        return "Post-Check";
+    }
+
+    @Override
+    public LaunchStatusJournal.Column statusColumn() {
+        return LaunchStatusJournal.Column.POST_CHECK;
+    }
+
+    @Override
+    public StageOutcome execute(LaunchContext context) {
+        LaunchSnapshot snapshot = context.getSnapshot();
+        if (!snapshot.hasPostCheck()) {
+            // Result-Diff has nothing to compare either
+            return StageOutcome.SKIP_DOWNSTREAM;
+        }
+
+        FlowConfigPostCheckDataDTO dataDTO = FlowConfigPostCheckDataDTO.builder()
+                .normalDeterminationCriteriaDtoList(snapshot.getPostCheckCriteria())
+                .build();
+
+        FlowConfigPostCheckRequestDTO postCheckRequestDTO = FlowConfigPostCheckRequestDTO.builder()
+                .data(dataDTO)
+                .build();
+
+        launchExecutor.runPostCheck(snapshot, postCheckRequestDTO, "2");
+        return StageOutcome.DONE;
+    }
+}
+
+
+@Component
+@RequiredArgsConstructor
+public class ResultDiffStage implements LaunchStage {
+
+    private final FlowConfigLaunchExecutor launchExecutor;
+
+    @Override
+    public String name() {
+        return "result_diff";
+    }
+
+    @Override
+    public String displayName() {
+        return "Result-Diff";
+    }
+
+    @Override
+    public LaunchStatusJournal.Column statusColumn() {
+        return LaunchStatusJournal.Column.RESULT_DIFF;
+    }
+
+    @Override
+    public StageOutcome execute(LaunchContext context) {
+        launchExecutor.processResultDiff(context.getSnapshot());
+        return StageOutcome.DONE;
+    }
+}
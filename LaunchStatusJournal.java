@@ -0,0 +1,101 @@
+/**
+ * Write-behind journal for the status columns a launch moves through. Transitions are
+ * coalesced per (launch, column) - an IN_PROGRESS that is already SUCCESS by the next flush
+ * is never written - and all launches' pending transitions go out in one transaction every
+ * flushMillis, instead of one transaction per transition on flow_config.
+ * flush(id) makes everything recorded for a launch durable before its terminal state is written.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LaunchStatusJournal {
+
+    public enum Column {
+        LAUNCH,
+        PRE_CHECK,
+        CONFIG_SETTING,
+        POST_CHECK,
+        RESULT_DIFF
+    }
+
+    private final FlowConfigService flowConfigService;
+
+    // Latest unwritten status per launch and column (guarded by itself)
+    private final Map<Long, Map<Column, FlowConfig.Status>> pending = new HashMap<>();
+
+    // Drain and write happen under this lock, so an older batch can never land after a newer one
+    private final Object writeLock = new Object();
+
+    private final ScheduledExecutorService flusher =
+        Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "LaunchStatusJournal"));
+
+    @Value("${flow.launch.journal.flush-millis:500}")
+    private long flushMillis;
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushAll, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(long id, Column column, FlowConfig.Status status) {
+        synchronized (pending) {
+            pending.computeIfAbsent(id, k -> new EnumMap<>(Column.class)).put(column, status);
+        }
+    }
+
+    /**
+     * Synchronously write everything recorded for this launch. Throws if the write fails,
+     * so a launch never reports completion with its stage statuses still in memory.
+     */
+    public void flush(long id) {
+        synchronized (writeLock) {
+            Map<Column, FlowConfig.Status> transitions;
+            synchronized (pending) {
+                transitions = pending.remove(id);
+            }
+            if (transitions == null) {
+                return;
+            }
+            write(Collections.singletonMap(id, transitions));
+        }
+    }
+
+    private void flushAll() {
+        synchronized (writeLock) {
+            Map<Long, Map<Column, FlowConfig.Status>> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new HashMap<>(pending);
+                pending.clear();
+            }
+            try {
+                write(batch);
+            } catch (Exception e) {
+                log.warn("Status journal flush of {} launches failed, retrying next cycle", batch.size(), e);
+            }
+        }
+    }
+
+    private void write(Map<Long, Map<Column, FlowConfig.Status>> batch) {
+        try {
+            flowConfigService.applyStatusBatch(batch);
+        } catch (RuntimeException e) {
+            // Put the batch back; anything recorded since is newer and wins
+            synchronized (pending) {
+                batch.forEach((id, transitions) -> {
+                    Map<Column, FlowConfig.Status> current = pending.computeIfAbsent(id, k -> new EnumMap<>(Column.class));
+                    transitions.forEach(current::putIfAbsent);
+                });
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushAll();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Content-addressed cache of simulation test results. The key is a SHA-256 over the switch
+ * configuration lines after normalization (trimmed, blank lines dropped), so retries and bulk
+ * flows built from one template simulate once. Anything else inside a line - spacing, comment
+ * markers - can be significant to a device, so it stays part of the key.
+ * Only SUCCESS is cached - a failed simulation may be transient and is always re-run.
+ * Entries expire after the TTL and the least recently used entry is evicted beyond max-entries.
+ * Concurrent launches with the same configuration share one in-flight simulation.
+ */
+@Slf4j
+@Component
+public class SimulationResultCache {
+
+    private static final String SUCCESS = "SUCCESS";
+
+    private final SimulationService simulationService;
+    private final FlowSchedulerMetrics flowSchedulerMetrics;
+
+    @Value("${flow.launch.simulation-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${flow.launch.simulation-cache.ttl:PT1H}")
+    private Duration ttl;
+
+    @Value("${flow.launch.simulation-cache.max-entries:1000}")
+    private int maxEntries;
+
+    // Access-ordered for LRU eviction; guarded by its own monitor
+    private final LinkedHashMap<String, Long> passedAt = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public SimulationResultCache(SimulationService simulationService, FlowSchedulerMetrics flowSchedulerMetrics,
+                                 MeterRegistry meterRegistry) {
+        this.simulationService = simulationService;
+        this.flowSchedulerMetrics = flowSchedulerMetrics;
+        meterRegistry.gauge("flow.launch.simulation.cache.size", this, SimulationResultCache::size);
+    }
+
+    /**
+     * Simulation status for the configuration, from the cache unless bypassed or expired
+     */
+    public String simulate(List<String> switchConfigurations, boolean bypass) {
+        if (!enabled || bypass) {
+            return simulationService.simulateConfiguration(switchConfigurations);
+        }
+
+        String key = key(switchConfigurations);
+        if (isCached(key)) {
+            flowSchedulerMetrics.simulationCache(true);
+            log.debug("Simulation cache hit for {}", key);
+            return SUCCESS;
+        }
+        flowSchedulerMetrics.simulationCache(false);
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            String status = simulationService.simulateConfiguration(switchConfigurations);
+            if (SUCCESS.equals(status)) {
+                put(key);
+            }
+            mine.complete(status);
+            return status;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (passedAt) {
+            return passedAt.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (passedAt) {
+            passedAt.clear();
+        }
+    }
+
+    private boolean isCached(String key) {
+        synchronized (passedAt) {
+            Long at = passedAt.get(key);
+            if (at == null) {
+                return false;
+            }
+            if (System.nanoTime() - at > ttl.toNanos()) {
+                passedAt.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private void put(String key) {
+        synchronized (passedAt) {
+            passedAt.put(key, System.nanoTime());
+            Iterator<String> eldest = passedAt.keySet().iterator();
+            while (passedAt.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    static String key(List<String> switchConfigurations) {
+        StringBuilder content = new StringBuilder();
+        for (String line : switchConfigurations) {
+            String normalized = normalize(line);
+            if (!normalized.isEmpty()) {
+                content.append(normalized).append('\n');
+            }
+        }
+        return ContentHash.sha256(content.toString());
+    }
+
+    // Only surrounding whitespace is formatting; the line itself is sent to the device as is
+    private static String normalize(String line) {
+        return line == null ? "" : line.trim();
+    }
+}
@@ -4,6 +4,8 @@
 public class FlowConfigController {
 
     private final FlowConfigService flowConfigService;
+    private final FlowScheduler flowScheduler;
+    private final LaunchLogWriter launchLogWriter;
 
     @PostMapping
     public ResponseEntity<FlowConfigResponseDTO> createFlowConfig(@RequestBody FlowConfigRequestDTO requestDTO) {
@@ -38,6 +40,75 @@ public ResponseEntity<Map<String, String>> deleteFlowConfig(@PathVariable Long i
     return ResponseEntity.ok(response);
 }
 
-    
+    @PostMapping("/{id}/launch")
+public ResponseEntity<Map<String, Object>> launchFlowConfig(@PathVariable Long id) {
+    OptionalInt position = flowScheduler.submitNow(id);
+    if (position.isEmpty()) {
+        Map<String, Object> response = Collections.singletonMap("message", "Flow config not found or already queued/running");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("status", "accepted");
+    response.put("position", position.getAsInt());
+    return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+}
+
+    /**
+     * Live tail of the launch log as server-sent events, starting at a byte offset.
+     * Each event id is the offset to resume from after a reconnect.
+     */
+    @GetMapping(path = "/{id}/log/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+public SseEmitter streamLaunchLog(@PathVariable Long id, @RequestParam(defaultValue = "0") long offset) {
+    SseEmitter emitter = new SseEmitter(0L);
+    LaunchLogWriter.TailListener listener = new LaunchLogWriter.TailListener() {
+        @Override
+        public void onData(byte[] data, long endOffset) {
+            SseEmitter.SseEventBuilder event = SseEmitter.event().id(String.valueOf(endOffset));
+            // One data: line per log line - a raw line break inside a data field would end the event
+            for (String line : new String(data, StandardCharsets.UTF_8).split("\r?\n")) {
+                event.data(line);
+            }
+            try {
+                emitter.send(event);
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        }
+
+        @Override
+        public void onClosed() {
+            emitter.complete();
+        }
+    };
+    emitter.onCompletion(() -> launchLogWriter.removeListener(id, listener));
+    emitter.onTimeout(() -> launchLogWriter.removeListener(id, listener));
+    emitter.onError(e -> launchLogWriter.removeListener(id, listener));
+    launchLogWriter.tail(id, offset, listener);
+    return emitter;
+}
+
+    /**
+     * Stop a queued or running launch; it ends in the CANCELLED state.
+     */
+    @PostMapping("/{id}/cancel")
+public ResponseEntity<Map<String, String>> cancelFlowConfig(@PathVariable Long id) {
+    if (!flowScheduler.cancel(id)) {
+        Map<String, String> response = Collections.singletonMap("message", "Flow config is not queued or running");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+    Map<String, String> response = Collections.singletonMap("status", "cancelling");
+    return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+}
+
+    @PutMapping("/{id}/priority")
+public ResponseEntity<Map<String, String>> changePriority(
+        @PathVariable Long id,
+        @RequestParam FlowConfig.Priority priority) {
+    if (!flowScheduler.changePriority(id, priority)) {
+        return ResponseEntity.notFound().build();
+    }
+    Map<String, String> response = Collections.singletonMap("priority", priority.name());
+    return ResponseEntity.ok(response);
+}
 
 }
@@ -0,0 +1,9 @@
+-- Lease-based scheduling: the node holding a QUEUED/IN_PROGRESS row and until when (FlowConfig.leaseOwner/leaseExpiresAt).
+-- Existing rows start unowned; crash recovery claims them.
+ALTER TABLE flow_config
+    ADD COLUMN IF NOT EXISTS lease_owner varchar(255),
+    ADD COLUMN IF NOT EXISTS lease_expires_at timestamp;
+
+-- Expired-lease takeover in FlowScheduler.renewLeases()
+CREATE INDEX IF NOT EXISTS idx_flow_config_status_lease
+    ON flow_config (status_launch, lease_expires_at);
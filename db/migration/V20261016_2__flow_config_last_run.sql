@@ -0,0 +1,4 @@
+-- Recurring configs: outcome of the previous run, kept when the row is re-armed to NOT_EXECUTED
+ALTER TABLE flow_config
+    ADD COLUMN IF NOT EXISTS last_run_status varchar(32),
+    ADD COLUMN IF NOT EXISTS last_run_time timestamp;
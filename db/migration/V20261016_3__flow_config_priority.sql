@@ -0,0 +1,3 @@
+-- Priority class of a flow (FlowConfig.Priority); existing configs are NORMAL
+ALTER TABLE flow_config
+    ADD COLUMN IF NOT EXISTS priority varchar(16) NOT NULL DEFAULT 'NORMAL';
@@ -0,0 +1,14 @@
+-- Per-device outcome of the latest run of each launch stage (DeviceFanOut)
+CREATE TABLE IF NOT EXISTS flow_device_stage_status (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    flow_config_id  bigint,
+    stage           varchar(255),
+    device          varchar(255),
+    status          varchar(32),
+    message         varchar(2000),
+    duration_millis bigint NOT NULL DEFAULT 0,
+    finished_at     timestamp
+);
+
+CREATE INDEX IF NOT EXISTS idx_device_stage_flow_stage
+    ON flow_device_stage_status (flow_config_id, stage);
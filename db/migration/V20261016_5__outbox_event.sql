@@ -0,0 +1,17 @@
+-- Transactional outbox: launch notifications written with the terminal status, delivered by OutboxRelay
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    flow_config_id  bigint,
+    event_type      varchar(255),
+    payload         varchar(4000),
+    created_at      timestamp,
+    attempts        integer NOT NULL DEFAULT 0,
+    next_attempt_at timestamp,
+    locked_until    timestamp,
+    processed_at    timestamp,
+    last_error      varchar(2000)
+);
+
+-- Relay claim (processed_at IS NULL AND next_attempt_at <= now) and retention purge (processed_at < cutoff)
+CREATE INDEX IF NOT EXISTS idx_outbox_event_pending
+    ON outbox_event (processed_at, next_attempt_at, id);
@@ -0,0 +1,14 @@
+-- Stage and per-device checkpoints of the current attempt of a launch (LaunchCheckpointStore)
+CREATE TABLE IF NOT EXISTS launch_checkpoint (
+    id             bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    flow_config_id bigint,
+    stage          varchar(255),
+    device         varchar(255),
+    outcome        varchar(64),
+    output         text,
+    fingerprint    varchar(255),
+    completed_at   timestamp
+);
+
+CREATE INDEX IF NOT EXISTS idx_launch_checkpoint_flow
+    ON launch_checkpoint (flow_config_id);
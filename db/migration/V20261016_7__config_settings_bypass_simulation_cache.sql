@@ -0,0 +1,3 @@
+-- Opt-out of the simulation result cache per config (ConfigSettings.bypassSimulationCache)
+ALTER TABLE config_settings
+    ADD COLUMN IF NOT EXISTS bypass_simulation_cache boolean NOT NULL DEFAULT false;
@@ -0,0 +1,3 @@
+-- Cancel request for a queued or running flow, seen by the lease owner on its next renewal
+ALTER TABLE flow_config
+    ADD COLUMN IF NOT EXISTS cancel_requested boolean NOT NULL DEFAULT false;
@@ -0,0 +1,9 @@
+-- Delivery state of an outbox event; DEAD events ran out of attempts and are no longer claimed
+ALTER TABLE outbox_event
+    ADD COLUMN IF NOT EXISTS status varchar(16) NOT NULL DEFAULT 'PENDING';
+
+UPDATE outbox_event SET status = 'PROCESSED' WHERE processed_at IS NOT NULL AND status = 'PENDING';
+
+-- Relay claim (status = 'PENDING' AND next_attempt_at <= now); idx_outbox_event_pending still serves the purge
+CREATE INDEX IF NOT EXISTS idx_outbox_event_status
+    ON outbox_event (status, next_attempt_at, id);
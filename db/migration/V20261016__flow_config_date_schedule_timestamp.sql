@@ -0,0 +1,13 @@
+-- flow_config.date_schedule: varchar "yyyy-MM-dd HH:mm:ss" -> timestamp (FlowConfig.dateSchedule is a LocalDateTime).
+-- Blank or malformed values become NULL: those rows were never due under the string compare either.
+-- Recurring configs left without a fire time are armed from scheduling_cron on their next save.
+ALTER TABLE flow_config
+    ALTER COLUMN date_schedule TYPE timestamp
+    USING CASE
+        WHEN date_schedule ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}:\d{2}$'
+            THEN to_timestamp(replace(date_schedule, 'T', ' '), 'YYYY-MM-DD HH24:MI:SS')::timestamp
+        END;
+
+-- Due-query and keyset paging of FlowScheduler.refreshQueue()
+CREATE INDEX IF NOT EXISTS idx_flow_config_status_schedule
+    ON flow_config (status_launch, date_schedule, id);
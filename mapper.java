@@ -10,6 +10,7 @@ public class FlowConfigMapper {
                 .description(dto.getDescription())
                 .scheduling(dto.isScheduling())
                 .schedulingCron(dto.getSchedulingCron())
+                .dateSchedule(isRecurring(dto) ? null : dto.getDateSchedule())
                 .createBy(dto.getCreateBy())
                 .targetDevices(dto.getTargetDevices())
                 .serviceVerificationBefore(toEntity(dto.getServiceVerificationBefore()))
@@ -18,6 +19,67 @@ public class FlowConfigMapper {
                 .build();
     }
 
+    /**
+     * Copy the user-editable fields onto a managed entity. Scheduler and launch state (status,
+     * lease, cancel flag, priority, last run) and settings the DTO does not carry are kept.
+     */
+    public void updateEntity(FlowConfigDataDTO dto, FlowConfig entity) {
+        boolean sameRecurrence = isRecurring(dto) && entity.isScheduling()
+                && Objects.equals(entity.getSchedulingCron(), dto.getSchedulingCron());
+        if (!isRecurring(dto)) {
+            entity.setDateSchedule(dto.getDateSchedule());
+        } else if (!sameRecurrence) {
+            entity.setDateSchedule(null); // The scheduler arms the first fire of the new cron
+        }
+        entity.setName(dto.getName());
+        entity.setEmail(dto.getEmail());
+        entity.setDescription(dto.getDescription());
+        entity.setScheduling(dto.isScheduling());
+        entity.setSchedulingCron(dto.getSchedulingCron());
+        entity.setCreateBy(dto.getCreateBy());
+        entity.setTargetDevices(replace(entity.getTargetDevices(), dto.getTargetDevices()));
+        entity.setServiceVerificationBefore(update(dto.getServiceVerificationBefore(), entity.getServiceVerificationBefore()));
+        entity.setConfigSettings(update(dto.getConfigSettings(), entity.getConfigSettings()));
+        entity.setServiceVerificationAfter(update(dto.getServiceVerificationAfter(), entity.getServiceVerificationAfter()));
+    }
+
+    private ServiceVerificationBefore update(ServiceVerificationBeforeDTO dto, ServiceVerificationBefore entity) {
+        if (dto == null || entity == null) return toEntity(dto);
+        entity.setConfigurationsBackup(dto.isConfigurationsBackup());
+        entity.setServiceCheckCommands(replace(entity.getServiceCheckCommands(), dto.getServiceCheckCommands()));
+        return entity;
+    }
+
+    private ConfigSettings update(ConfigSettingsDTO dto, ConfigSettings entity) {
+        if (dto == null || entity == null) return toEntity(dto);
+        entity.setSwitchConfiguration(replace(entity.getSwitchConfiguration(), dto.getSwitchConfiguration()));
+        entity.setUplinkRedundancyTest(dto.isUplinkRedundancyTest());
+        entity.setRebootDevices(dto.isRebootDevices());
+        return entity;
+    }
+
+    private ServiceVerificationAfter update(ServiceVerificationAfterDTO dto, ServiceVerificationAfter entity) {
+        if (dto == null || entity == null) return toEntity(dto);
+        entity.setServiceCheckCommands(replace(entity.getServiceCheckCommands(), dto.getServiceCheckCommands()));
+        entity.setNormalDeterminationCriteria(replace(entity.getNormalDeterminationCriteria(),
+                toNormalCriteriaList(dto.getNormalDeterminationCriteria())));
+        return entity;
+    }
+
+    // The scheduler owns dateSchedule of a recurring config (CronSchedule.isRecurring)
+    private static boolean isRecurring(FlowConfigDataDTO dto) {
+        return dto.isScheduling() && dto.getSchedulingCron() != null && !dto.getSchedulingCron().isBlank();
+    }
+
+    // Refill the managed collection in place so Hibernate keeps tracking it (orphanRemoval)
+    private static <T> List<T> replace(List<T> current, List<T> values) {
+        if (values == null) return null;
+        if (current == null) return new ArrayList<>(values);
+        current.clear();
+        current.addAll(values);
+        return current;
+    }
+
     private ServiceVerificationBefore toEntity(ServiceVerificationBeforeDTO dto) {
         if (dto == null) return null;
         return ServiceVerificationBefore.builder()
@@ -75,6 +137,7 @@ public class FlowConfigMapper {
             .description(entity.getDescription())
             .scheduling(entity.isScheduling())
             .schedulingCron(entity.getSchedulingCron())
+            .dateSchedule(entity.getDateSchedule())
             .createBy(entity.getCreateBy())
             .targetDevices(entity.getTargetDevices())
             .serviceVerificationBefore(toBeforeDTO(entity.getServiceVerificationBefore()))
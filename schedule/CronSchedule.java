@@ -0,0 +1,44 @@
+import org.springframework.scheduling.support.CronExpression;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Next-fire-time calculation for recurring flow configs (schedulingCron).
+ * Only evaluated when a config is saved or finishes a run - the result is
+ * persisted as dateSchedule, so the due-query never has to look at cron strings.
+ */
+public final class CronSchedule {
+
+    // Parsed expressions are immutable; thousands of configs share a handful of patterns
+    private static final Map<String, CronExpression> PARSED = new ConcurrentHashMap<>();
+
+    private CronSchedule() {
+    }
+
+    /**
+     * Next fire time strictly after the given instant, empty for a blank or invalid expression.
+     * Accepts both 5-field unix cron and Spring's 6-field form (with seconds).
+     */
+    public static Optional<LocalDateTime> nextFireTime(String cron, LocalDateTime after) {
+        if (cron == null || cron.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            CronExpression expression = PARSED.computeIfAbsent(cron.trim(), CronSchedule::parse);
+            return Optional.ofNullable(expression.next(after));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static boolean isRecurring(FlowConfig config) {
+        return config.isScheduling() && config.getSchedulingCron() != null && !config.getSchedulingCron().isBlank();
+    }
+
+    private static CronExpression parse(String cron) {
+        String normalized = cron.split("\\s+").length == 5 ? "0 " + cron : cron;
+        return CronExpression.parse(normalized);
+    }
+}
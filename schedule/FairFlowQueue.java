@@ -0,0 +1,151 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Execution queue shared fairly between tenants (createBy).
+ * Each tenant has its own IndexedFlowQueue ordered by priority rank; poll() serves the
+ * tenant with the lowest virtual time and advances it by 1 / weight (start-time fair queueing),
+ * so a tenant with a large batch gets its weighted share instead of delaying everyone else.
+ * A tenant that was idle re-enters at the current virtual time and cannot bank credit.
+ * Not thread-safe; FlowScheduler guards it with its queueLock.
+ */
+public class FairFlowQueue {
+
+    private final Map<String, IndexedFlowQueue> queueByTenant = new HashMap<>();
+    private final Map<String, Double> virtualTimeByTenant = new HashMap<>();
+    private final Map<Long, String> tenantById = new HashMap<>();
+    private final ToIntFunction<String> weightOf;
+    private double virtualTime;
+
+    public FairFlowQueue(ToIntFunction<String> weightOf) {
+        this.weightOf = weightOf;
+    }
+
+    /**
+     * Add a flow, or reposition it if one with the same id is already queued
+     */
+    public void offer(ScheduledFlow flow) {
+        String previousTenant = tenantById.get(flow.getFlowConfigId());
+        if (previousTenant != null && !previousTenant.equals(flow.getTenant())) {
+            remove(flow.getFlowConfigId());
+        }
+        IndexedFlowQueue queue = queueByTenant.get(flow.getTenant());
+        if (queue == null) {
+            queue = new IndexedFlowQueue();
+            queueByTenant.put(flow.getTenant(), queue);
+            virtualTimeByTenant.merge(flow.getTenant(), virtualTime, Math::max);
+        }
+        queue.offer(flow);
+        tenantById.put(flow.getFlowConfigId(), flow.getTenant());
+    }
+
+    /**
+     * Next flow in fair order; its tenant is charged for it
+     */
+    public ScheduledFlow poll() {
+        String tenant = nextTenant();
+        if (tenant == null) {
+            return null;
+        }
+        double start = virtualTimeByTenant.get(tenant);
+        virtualTime = start;
+        virtualTimeByTenant.put(tenant, start + 1.0 / Math.max(1, weightOf.applyAsInt(tenant)));
+        return detach(tenant, queueByTenant.get(tenant).poll());
+    }
+
+    /**
+     * Return a polled flow that could not start and refund its tenant's charge
+     */
+    public void pushBack(ScheduledFlow flow) {
+        String tenant = flow.getTenant();
+        virtualTimeByTenant.computeIfPresent(tenant,
+            (t, vt) -> vt - 1.0 / Math.max(1, weightOf.applyAsInt(t)));
+        offer(flow);
+    }
+
+    /**
+     * Cancel a queued flow, returns null if it was not queued
+     */
+    public ScheduledFlow remove(Long flowConfigId) {
+        String tenant = tenantById.get(flowConfigId);
+        return tenant == null ? null : detach(tenant, queueByTenant.get(tenant).remove(flowConfigId));
+    }
+
+    /**
+     * Move a queued flow to a new scheduled time in place, returns false if it was not queued
+     */
+    public boolean reschedule(Long flowConfigId, LocalDateTime scheduledTime) {
+        String tenant = tenantById.get(flowConfigId);
+        return tenant != null && queueByTenant.get(tenant).reschedule(flowConfigId, scheduledTime);
+    }
+
+    /**
+     * Change the priority class of a queued flow in place, returns false if it was not queued
+     */
+    public boolean reprioritize(Long flowConfigId, FlowConfig.Priority priority) {
+        String tenant = tenantById.get(flowConfigId);
+        return tenant != null && queueByTenant.get(tenant).reprioritize(flowConfigId, priority);
+    }
+
+    public ScheduledFlow get(Long flowConfigId) {
+        String tenant = tenantById.get(flowConfigId);
+        return tenant == null ? null : queueByTenant.get(tenant).get(flowConfigId);
+    }
+
+    public boolean contains(Long flowConfigId) {
+        return tenantById.containsKey(flowConfigId);
+    }
+
+    public int size() {
+        return tenantById.size();
+    }
+
+    public boolean isEmpty() {
+        return tenantById.isEmpty();
+    }
+
+    public Map<String, Integer> sizeByTenant() {
+        Map<String, Integer> sizes = new HashMap<>();
+        queueByTenant.forEach((tenant, queue) -> sizes.put(tenant, queue.size()));
+        return sizes;
+    }
+
+    public void clear() {
+        queueByTenant.clear();
+        virtualTimeByTenant.clear();
+        tenantById.clear();
+        virtualTime = 0;
+    }
+
+    // Lowest virtual time among tenants with queued flows; the head flow breaks ties
+    private String nextTenant() {
+        String best = null;
+        double bestTime = 0;
+        for (Map.Entry<String, IndexedFlowQueue> entry : queueByTenant.entrySet()) {
+            double time = virtualTimeByTenant.get(entry.getKey());
+            if (best == null || time < bestTime
+                    || (time == bestTime && entry.getValue().peek().compareTo(queueByTenant.get(best).peek()) < 0)) {
+                best = entry.getKey();
+                bestTime = time;
+            }
+        }
+        return best;
+    }
+
+    private ScheduledFlow detach(String tenant, ScheduledFlow flow) {
+        if (flow == null) {
+            return null;
+        }
+        tenantById.remove(flow.getFlowConfigId());
+        IndexedFlowQueue queue = queueByTenant.get(tenant);
+        if (queue.isEmpty()) {
+            queueByTenant.remove(tenant);
+            // Idle tenants only keep a virtual time that is still ahead of the clock
+            if (virtualTimeByTenant.get(tenant) <= virtualTime) {
+                virtualTimeByTenant.remove(tenant);
+            }
+        }
+        return flow;
+    }
+}
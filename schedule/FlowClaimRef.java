@@ -0,0 +1,8 @@
+/**
+ * Row returned by the bulk claims - schedule plus the fair-queueing keys
+ */
+public interface FlowClaimRef extends FlowScheduleRef {
+    String getCreateBy();
+    // Native RETURNING hands the enum column back as text
+    String getPriority();
+}
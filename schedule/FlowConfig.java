@@ -1,27 +1,74 @@
 import lombok.Data;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Entity
-@Table(name = "flow_config")
+@Table(name = "flow_config", indexes = {
+    // Serves the due-query and keyset pagination in FlowScheduler.refreshQueue()
+    @Index(name = "idx_flow_config_status_schedule", columnList = "status_launch, date_schedule, id"),
+    // Expired-lease takeover in FlowScheduler.renewLeases()
+    @Index(name = "idx_flow_config_status_lease", columnList = "status_launch, lease_expires_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+// Entity saves write only the changed columns, never the scheduler's status and lease from a stale read
+@DynamicUpdate
 public class FlowConfig {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    // One-shot: the launch time. Recurring: the precomputed next fire time of schedulingCron
     @Column(name = "date_schedule")
-    private String dateSchedule; // Format: "yyyy-MM-dd HH:mm:ss"
+    private LocalDateTime dateSchedule;
+    
+    private boolean scheduling;
+    
+    @Column(name = "scheduling_cron")
+    private String schedulingCron;
     
     @Enumerated(EnumType.STRING)
     @Column(name = "status_launch")
     private Status statusLaunch = Status.NOT_EXECUTED;
     
+    // Tenant for fair sharing of the execution queue
+    @Column(name = "create_by")
+    private String createBy;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "priority")
+    private Priority priority = Priority.NORMAL;
+    
+    @ElementCollection
+    @CollectionTable(name = "flow_config_target_devices", joinColumns = @JoinColumn(name = "flow_config_id"))
+    @Column(name = "device")
+    private List<String> targetDevices;
+    
+    // Node currently responsible for this row; null when nobody holds it
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    
+    // Set by a cancel request on any node; the lease owner stops the run on its next lease renewal
+    @Column(name = "cancel_requested")
+    private boolean cancelRequested;
+    
+    // Outcome of the previous run of a recurring config, kept when it is re-armed to NOT_EXECUTED
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_run_status")
+    private Status lastRunStatus;
+    
+    @Column(name = "last_run_time")
+    private LocalDateTime lastRunTime;
+    
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated = LocalDateTime.now();
     
@@ -30,7 +77,30 @@ public class FlowConfig {
         QUEUED,
         IN_PROGRESS,
         SUCCESS,
-        FAIL
+        FAIL,
+        // Stopped by an operator or because the config was deleted mid-run
+        CANCELLED
+    }
+    
+    /**
+     * Priority class within a tenant's queue. A class is a head start on dateSchedule rather
+     * than a strict tier, so a LOW flow is only overtaken by flows scheduled less than
+     * 2 * headStartMinutes after it and cannot starve.
+     */
+    public enum Priority {
+        HIGH(10),
+        NORMAL(0),
+        LOW(-10);
+        
+        private final long headStartMinutes;
+        
+        Priority(long headStartMinutes) {
+            this.headStartMinutes = headStartMinutes;
+        }
+        
+        public long getHeadStartMinutes() {
+            return headStartMinutes;
+        }
     }
     
     @PreUpdate
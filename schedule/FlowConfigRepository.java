@@ -1,33 +1,197 @@
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface FlowConfigRepository extends JpaRepository<FlowConfig, Long> {
     
-    // For crash recovery: find due configs that are NOT SUCCESS/FAIL
-    @Query("SELECT fc FROM FlowConfig fc WHERE fc.dateSchedule <= :currentTime AND fc.statusLaunch NOT IN :excludedStatuses")
-    List<FlowConfig> findByDateScheduleLessThanEqualAndStatusLaunchNotIn(
-        @Param("currentTime") String currentTime,
-        @Param("excludedStatuses") List<FlowConfig.Status> excludedStatuses
+    // For crash recovery across replicas: one keyset page, skipping rows another node still holds a live lease on
+    @Query("SELECT fc.id AS id, fc.dateSchedule AS dateSchedule FROM FlowConfig fc " +
+           "WHERE fc.dateSchedule <= :currentTime AND fc.statusLaunch NOT IN :excludedStatuses " +
+           "AND (fc.leaseOwner IS NULL OR fc.leaseOwner = :owner OR fc.leaseExpiresAt < :now) " +
+           "AND (fc.dateSchedule > :afterSchedule OR (fc.dateSchedule = :afterSchedule AND fc.id > :afterId)) " +
+           "ORDER BY fc.dateSchedule, fc.id")
+    List<FlowScheduleRef> findRecoverablePage(
+        @Param("currentTime") LocalDateTime currentTime,
+        @Param("excludedStatuses") List<FlowConfig.Status> excludedStatuses,
+        @Param("owner") String owner,
+        @Param("now") LocalDateTime now,
+        @Param("afterSchedule") LocalDateTime afterSchedule,
+        @Param("afterId") Long afterId,
+        Pageable page
     );
     
-    // For normal polling: find due configs with specific status that are not already queued
-    @Query("SELECT fc FROM FlowConfig fc WHERE fc.dateSchedule <= :currentTime AND fc.statusLaunch = :status AND fc.id NOT IN :excludedIds")
-    List<FlowConfig> findByDateScheduleLessThanEqualAndStatusLaunchAndIdNotIn(
-        @Param("currentTime") String currentTime,
+    // For normal polling: one keyset page of (id, dateSchedule) in schedule order, served by idx_flow_config_status_schedule
+    @Query("SELECT fc.id AS id, fc.dateSchedule AS dateSchedule FROM FlowConfig fc " +
+           "WHERE fc.statusLaunch = :status AND fc.dateSchedule <= :until " +
+           "AND (fc.dateSchedule > :afterSchedule OR (fc.dateSchedule = :afterSchedule AND fc.id > :afterId)) " +
+           "ORDER BY fc.dateSchedule, fc.id")
+    List<FlowScheduleRef> findSchedulePage(
         @Param("status") FlowConfig.Status status,
-        @Param("excludedIds") List<Long> excludedIds
+        @Param("until") LocalDateTime until,
+        @Param("afterSchedule") LocalDateTime afterSchedule,
+        @Param("afterId") Long afterId,
+        Pageable page
     );
     
+    // Recurring configs firing in a window - a range scan on idx_flow_config_status_schedule, no cron evaluation
+    @Query("SELECT fc.id AS id, fc.dateSchedule AS dateSchedule FROM FlowConfig fc " +
+           "WHERE fc.statusLaunch = :status AND fc.dateSchedule BETWEEN :from AND :until AND fc.scheduling = true " +
+           "ORDER BY fc.dateSchedule, fc.id")
+    List<FlowScheduleRef> findRecurringFiringBetween(
+        @Param("status") FlowConfig.Status status,
+        @Param("from") LocalDateTime from,
+        @Param("until") LocalDateTime until
+    );
+    
+    // Conflict keys for a whole claimed page, read without touching the lazy collection
+    @Query("SELECT fc.id AS id, d AS device FROM FlowConfig fc JOIN fc.targetDevices d WHERE fc.id IN :ids")
+    List<FlowDeviceRef> findTargetDevicesByIds(@Param("ids") Collection<Long> ids);
+    
     // Simple status update
     @Modifying
+    @Transactional
     @Query("UPDATE FlowConfig fc SET fc.statusLaunch = :newStatus, fc.lastUpdated = CURRENT_TIMESTAMP WHERE fc.id = :id")
     void updateStatus(@Param("id") Long id, @Param("newStatus") FlowConfig.Status newStatus);
     
-    // Conditional status update (for atomic operations)
+    // Conditional status update (for atomic operations) - also called from the dispatch timer thread
     @Modifying
+    @Transactional
     @Query("UPDATE FlowConfig fc SET fc.statusLaunch = :newStatus, fc.lastUpdated = CURRENT_TIMESTAMP WHERE fc.id = :id AND fc.statusLaunch = :oldStatus")
     int updateStatusIfMatches(@Param("id") Long id, @Param("oldStatus") FlowConfig.Status oldStatus, @Param("newStatus") FlowConfig.Status newStatus);
+    
+    /*
+     * Bulk claims (PostgreSQL). Each is a single UPDATE ... RETURNING, so one round trip
+     * moves a whole page to QUEUED under our lease and reports exactly the rows this node won.
+     * Rows another node changed in the meantime simply do not come back.
+     */
+    
+    // Claim the given NOT_EXECUTED rows (timer dispatch) - only if still due: the in-memory fire time may be stale
+    @Transactional
+    @Query(value = "UPDATE flow_config SET status_launch = 'QUEUED', lease_owner = :owner, lease_expires_at = :leaseUntil, " +
+                   "last_updated = CURRENT_TIMESTAMP WHERE id IN (:ids) AND status_launch = 'NOT_EXECUTED' " +
+                   "AND date_schedule <= :currentTime " +
+                   "RETURNING id AS id, date_schedule AS dateSchedule, create_by AS createBy, priority AS priority",
+           nativeQuery = true)
+    List<FlowClaimRef> claimByIds(@Param("ids") Collection<Long> ids, @Param("currentTime") LocalDateTime currentTime,
+                                  @Param("owner") String owner, @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    // Claim the next page of due rows; SKIP LOCKED hands concurrent nodes disjoint slices
+    @Transactional
+    @Query(value = "UPDATE flow_config SET status_launch = 'QUEUED', lease_owner = :owner, lease_expires_at = :leaseUntil, " +
+                   "last_updated = CURRENT_TIMESTAMP WHERE id IN (" +
+                   "SELECT id FROM flow_config WHERE status_launch = 'NOT_EXECUTED' AND date_schedule <= :currentTime " +
+                   "ORDER BY date_schedule, id LIMIT :batchSize FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING id AS id, date_schedule AS dateSchedule, create_by AS createBy, priority AS priority",
+           nativeQuery = true)
+    List<FlowClaimRef> claimDueBatch(@Param("currentTime") LocalDateTime currentTime, @Param("owner") String owner,
+                                     @Param("leaseUntil") LocalDateTime leaseUntil, @Param("batchSize") int batchSize);
+    
+    // Crash recovery claim - only rows that are not terminal and are unowned, ours, or past their lease
+    @Transactional
+    @Query(value = "UPDATE flow_config SET status_launch = 'QUEUED', lease_owner = :owner, lease_expires_at = :leaseUntil, " +
+                   "last_updated = CURRENT_TIMESTAMP WHERE id IN (:ids) AND status_launch NOT IN ('SUCCESS', 'FAIL', 'CANCELLED') " +
+                   "AND (lease_owner IS NULL OR lease_owner = :owner OR lease_expires_at < :now) " +
+                   "RETURNING id AS id, date_schedule AS dateSchedule, create_by AS createBy, priority AS priority",
+           nativeQuery = true)
+    List<FlowClaimRef> claimForRecovery(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                                        @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+    
+    // Manual launch - any row that is not already queued or running, rescheduled to now; a new run starts uncancelled
+    @Transactional
+    @Query(value = "UPDATE flow_config SET status_launch = 'QUEUED', lease_owner = :owner, lease_expires_at = :leaseUntil, " +
+                   "date_schedule = :now, cancel_requested = false, last_updated = CURRENT_TIMESTAMP " +
+                   "WHERE id = :id AND status_launch IN ('NOT_EXECUTED', 'SUCCESS', 'FAIL', 'CANCELLED') " +
+                   "RETURNING id AS id, date_schedule AS dateSchedule, create_by AS createBy, priority AS priority",
+           nativeQuery = true)
+    List<FlowClaimRef> claimForLaunch(@Param("id") Long id, @Param("owner") String owner,
+                                      @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+    
+    // Only rows still waiting or running; a finished row's lease is never extended
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.leaseExpiresAt = :leaseUntil WHERE fc.leaseOwner = :owner AND fc.id IN :ids " +
+           "AND fc.statusLaunch IN :active")
+    int renewLeases(@Param("owner") String owner, @Param("ids") List<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil,
+                    @Param("active") Collection<FlowConfig.Status> active);
+    
+    // Adopt QUEUED/IN_PROGRESS rows whose owner stopped renewing; they restart as QUEUED. Never our own rows
+    // (a late renewal must not restart a running flow), at most one batch, SKIP LOCKED so nodes split the backlog
+    @Transactional
+    @Query(value = "UPDATE flow_config SET status_launch = 'QUEUED', lease_owner = :owner, lease_expires_at = :leaseUntil, " +
+                   "last_updated = CURRENT_TIMESTAMP WHERE id IN (" +
+                   "SELECT id FROM flow_config WHERE status_launch IN ('QUEUED', 'IN_PROGRESS') AND lease_expires_at < :now " +
+                   "AND lease_owner <> :owner ORDER BY lease_expires_at, id LIMIT :batchSize FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING id AS id, date_schedule AS dateSchedule, create_by AS createBy, priority AS priority",
+           nativeQuery = true)
+    List<FlowClaimRef> takeOverExpiredLeases(@Param("owner") String owner, @Param("leaseUntil") LocalDateTime leaseUntil,
+                                             @Param("now") LocalDateTime now, @Param("batchSize") int batchSize);
+    
+    // Status transition guarded by lease ownership
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.statusLaunch = :newStatus, fc.lastUpdated = CURRENT_TIMESTAMP " +
+           "WHERE fc.id = :id AND fc.statusLaunch = :oldStatus AND fc.leaseOwner = :owner")
+    int updateOwnedStatus(@Param("id") Long id, @Param("owner") String owner,
+                          @Param("oldStatus") FlowConfig.Status oldStatus, @Param("newStatus") FlowConfig.Status newStatus);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.statusLaunch = :newStatus, fc.lastUpdated = CURRENT_TIMESTAMP " +
+           "WHERE fc.id = :id AND fc.statusLaunch IN :oldStatuses AND fc.leaseOwner = :owner")
+    int updateOwnedStatus(@Param("id") Long id, @Param("owner") String owner,
+                          @Param("oldStatuses") Collection<FlowConfig.Status> oldStatuses,
+                          @Param("newStatus") FlowConfig.Status newStatus);
+    
+    /*
+     * Terminal transition - releases the lease and any handled cancel request.
+     * oldStatuses includes the result itself: the launch service has usually written the
+     * terminal status already (FlowConfigService.completeLaunch, guarded by the same lease owner),
+     * and the scheduler still owns the lease release and the re-arm.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.statusLaunch = :newStatus, fc.leaseOwner = NULL, fc.leaseExpiresAt = NULL, " +
+           "fc.cancelRequested = false, fc.lastUpdated = CURRENT_TIMESTAMP " +
+           "WHERE fc.id = :id AND fc.statusLaunch IN :oldStatuses AND fc.leaseOwner = :owner")
+    int completeOwned(@Param("id") Long id, @Param("owner") String owner,
+                      @Param("oldStatuses") Collection<FlowConfig.Status> oldStatuses, @Param("newStatus") FlowConfig.Status newStatus);
+    
+    // Recurring configs: record the run outcome and re-arm at the next cron fire time, releasing the lease
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.statusLaunch = :nextStatus, fc.lastRunStatus = :runStatus, fc.lastRunTime = CURRENT_TIMESTAMP, " +
+           "fc.dateSchedule = :nextFire, fc.leaseOwner = NULL, fc.leaseExpiresAt = NULL, fc.cancelRequested = false, " +
+           "fc.lastUpdated = CURRENT_TIMESTAMP " +
+           "WHERE fc.id = :id AND fc.statusLaunch IN :oldStatuses AND fc.leaseOwner = :owner")
+    int completeAndRearm(@Param("id") Long id, @Param("owner") String owner,
+                         @Param("oldStatuses") Collection<FlowConfig.Status> oldStatuses, @Param("runStatus") FlowConfig.Status runStatus,
+                         @Param("nextStatus") FlowConfig.Status nextStatus, @Param("nextFire") LocalDateTime nextFire);
+    
+    // First arming of a recurring config that has no fire time yet
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.dateSchedule = :nextFire WHERE fc.id = :id AND fc.statusLaunch = :status AND fc.dateSchedule IS NULL")
+    int armFirstFire(@Param("id") Long id, @Param("status") FlowConfig.Status status, @Param("nextFire") LocalDateTime nextFire);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.priority = :priority, fc.lastUpdated = CURRENT_TIMESTAMP WHERE fc.id = :id")
+    int updatePriority(@Param("id") Long id, @Param("priority") FlowConfig.Priority priority);
+    
+    // Cancel request for a queued or running row, whichever node holds it
+    @Modifying
+    @Transactional
+    @Query("UPDATE FlowConfig fc SET fc.cancelRequested = true, fc.lastUpdated = CURRENT_TIMESTAMP " +
+           "WHERE fc.id = :id AND fc.statusLaunch IN :statuses")
+    int requestCancel(@Param("id") Long id, @Param("statuses") Collection<FlowConfig.Status> statuses);
+    
+    // Rows of ours that another node asked to cancel
+    @Query("SELECT fc.id FROM FlowConfig fc WHERE fc.leaseOwner = :owner AND fc.id IN :ids AND fc.cancelRequested = true")
+    List<Long> findCancelRequested(@Param("owner") String owner, @Param("ids") List<Long> ids);
 }
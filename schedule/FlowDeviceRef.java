@@ -0,0 +1,7 @@
+/**
+ * Projection of one (flow config, target device) pair - conflict keys for a claimed page
+ */
+public interface FlowDeviceRef {
+    Long getId();
+    String getDevice();
+}
@@ -0,0 +1,73 @@
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * In-memory index of upcoming fire times for NOT_EXECUTED flow configs.
+ * Lets the scheduler sleep until exactly the next due time instead of polling.
+ */
+public class FlowFireIndex {
+
+    private final NavigableMap<LocalDateTime, Set<Long>> idsByFireTime = new TreeMap<>();
+    private final Map<Long, LocalDateTime> fireTimeById = new HashMap<>();
+
+    /**
+     * Add or move a config to the given fire time
+     */
+    public synchronized void put(Long configId, LocalDateTime fireTime) {
+        LocalDateTime previous = fireTimeById.put(configId, fireTime);
+        if (previous != null) {
+            detach(configId, previous);
+        }
+        idsByFireTime.computeIfAbsent(fireTime, t -> new LinkedHashSet<>()).add(configId);
+    }
+
+    public synchronized void remove(Long configId) {
+        LocalDateTime previous = fireTimeById.remove(configId);
+        if (previous != null) {
+            detach(configId, previous);
+        }
+    }
+
+    /**
+     * Remove and return every config whose fire time is at or before now, earliest first
+     */
+    public synchronized List<Map.Entry<Long, LocalDateTime>> pollDue(LocalDateTime now) {
+        List<Map.Entry<Long, LocalDateTime>> due = new ArrayList<>();
+        NavigableMap<LocalDateTime, Set<Long>> head = idsByFireTime.headMap(now, true);
+        for (Map.Entry<LocalDateTime, Set<Long>> slot : head.entrySet()) {
+            for (Long configId : slot.getValue()) {
+                fireTimeById.remove(configId);
+                due.add(new AbstractMap.SimpleImmutableEntry<>(configId, slot.getKey()));
+            }
+        }
+        head.clear();
+        return due;
+    }
+
+    public synchronized Optional<LocalDateTime> nextFireTime() {
+        return idsByFireTime.isEmpty() ? Optional.empty() : Optional.of(idsByFireTime.firstKey());
+    }
+
+    public synchronized boolean contains(Long configId) {
+        return fireTimeById.containsKey(configId);
+    }
+
+    public synchronized int size() {
+        return fireTimeById.size();
+    }
+
+    public synchronized void clear() {
+        idsByFireTime.clear();
+        fireTimeById.clear();
+    }
+
+    private void detach(Long configId, LocalDateTime fireTime) {
+        Set<Long> ids = idsByFireTime.get(fireTime);
+        if (ids != null) {
+            ids.remove(configId);
+            if (ids.isEmpty()) {
+                idsByFireTime.remove(fireTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Liveness of flows running on this node. The scheduler registers a heartbeat when a
+ * worker picks a flow up, the launch pipeline beats as it makes progress, and the
+ * scheduler's monitor checks the (small, in-memory) set of live runs every few seconds.
+ * Kept separate from FlowScheduler so the launch pipeline can beat without depending on it.
+ */
+@Component
+public class FlowHeartbeatRegistry {
+
+    // How often a launch waiting on a running stage beats; the scheduler's timeout must be a few of these
+    public static final Duration BEAT_INTERVAL = Duration.ofSeconds(5);
+
+    private final Map<Long, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+    @Getter
+    public static class Heartbeat {
+        private final Long flowConfigId;
+        private final Thread worker;
+        private final long startedNanos = System.nanoTime();
+        private volatile long lastBeatNanos = startedNanos;
+        private volatile boolean abandoned;
+
+        Heartbeat(Long flowConfigId, Thread worker) {
+            this.flowConfigId = flowConfigId;
+            this.worker = worker;
+        }
+
+        boolean isExpired(long now, long timeoutNanos) {
+            return !worker.isAlive() || now - lastBeatNanos > timeoutNanos;
+        }
+
+        /**
+         * Mark a stalled but still running attempt as given up on. Returns true the first time only.
+         */
+        public synchronized boolean abandon() {
+            if (abandoned) {
+                return false;
+            }
+            abandoned = true;
+            return true;
+        }
+    }
+
+    /**
+     * Called on the launch executor thread that runs the flow, when the run starts
+     */
+    public Heartbeat register(Long flowConfigId) {
+        Heartbeat heartbeat = new Heartbeat(flowConfigId, Thread.currentThread());
+        heartbeats.put(flowConfigId, heartbeat);
+        return heartbeat;
+    }
+
+    public void beat(Long flowConfigId) {
+        Heartbeat heartbeat = heartbeats.get(flowConfigId);
+        if (heartbeat != null) {
+            heartbeat.lastBeatNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * True once the monitor gave up on the current run for this id; its result is not trusted
+     */
+    public boolean isAbandoned(Long flowConfigId) {
+        Heartbeat heartbeat = heartbeats.get(flowConfigId);
+        return heartbeat != null && heartbeat.isAbandoned();
+    }
+
+    /**
+     * Remove the run if it is still the current one for this id.
+     * Returns false when the monitor already declared it dead.
+     */
+    public boolean unregister(Long flowConfigId, Heartbeat heartbeat) {
+        return heartbeats.remove(flowConfigId, heartbeat);
+    }
+
+    /**
+     * Runs whose worker thread died or that have not beaten within the timeout
+     */
+    public List<Heartbeat> findExpired(long timeoutNanos) {
+        long now = System.nanoTime();
+        List<Heartbeat> expired = new ArrayList<>();
+        for (Heartbeat heartbeat : heartbeats.values()) {
+            if (heartbeat.isExpired(now, timeoutNanos)) {
+                expired.add(heartbeat);
+            }
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,9 @@
+import java.time.LocalDateTime;
+
+/**
+ * Projection used by the due-query - only what the fire index needs
+ */
+public interface FlowScheduleRef {
+    Long getId();
+    LocalDateTime getDateSchedule();
+}
@@ -1,117 +1,231 @@
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.transaction.Transactional;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class FlowScheduler {
     
     private final FlowConfigRepository flowConfigRepository;
     private final AsyncTaskManager asyncTaskManager;
+    // Runs every launch; its limit (and AbortPolicy) is the only bound on concurrent flows
+    private final TaskExecutor launchExecutor;
+    private final FlowSchedulerProperties properties;
+    private final FlowHeartbeatRegistry heartbeatRegistry;
+    private final FlowSchedulerMetrics metrics;
+    private final LaunchCancellation launchCancellation;
+    private final LaunchCheckpointStore launchCheckpointStore;
+    private final LeaseOwner leaseOwner;
     
-    private final PriorityBlockingQueue<ScheduledFlow> executionQueue = new PriorityBlockingQueue<>();
+    public FlowScheduler(FlowConfigRepository flowConfigRepository,
+                         AsyncTaskManager asyncTaskManager,
+                         @Qualifier("launchTaskExecutor") TaskExecutor launchExecutor,
+                         FlowSchedulerProperties properties,
+                         FlowHeartbeatRegistry heartbeatRegistry,
+                         FlowSchedulerMetrics metrics,
+                         LaunchCancellation launchCancellation,
+                         LaunchCheckpointStore launchCheckpointStore,
+                         LeaseOwner leaseOwner) {
+        this.flowConfigRepository = flowConfigRepository;
+        this.asyncTaskManager = asyncTaskManager;
+        this.launchExecutor = launchExecutor;
+        this.properties = properties;
+        this.heartbeatRegistry = heartbeatRegistry;
+        this.metrics = metrics;
+        this.launchCancellation = launchCancellation;
+        this.launchCheckpointStore = launchCheckpointStore;
+        this.leaseOwner = leaseOwner;
+    }
+    
+    // Queued flows shared fairly between tenants, priority order within each (guarded by queueLock)
+    private final FairFlowQueue executionQueue = new FairFlowQueue(tenant -> properties.tenantWeight(tenant));
     private final Map<Long, ScheduledFlow> pendingFlows = new ConcurrentHashMap<>();
-    private final AtomicBoolean isExecuting = new AtomicBoolean(false);
+    private final Object queueLock = new Object();
     
-    private static final Duration POLLING_INTERVAL = Duration.ofMinutes(1);
+    // Flows handed to the launch executor and the target devices they hold (guarded by queueLock)
+    private final Map<Long, ScheduledFlow> runningFlows = new HashMap<>();
+    private final Set<String> busyDevices = new HashSet<>();
+    
+    // Timer-driven dispatch: upcoming fire times and a single wake-up armed for the earliest one
+    private final FlowFireIndex fireIndex = new FlowFireIndex();
+    private final ScheduledExecutorService dispatchTimer =
+        Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "FlowDispatchTimer"));
+    private final Object timerLock = new Object();
+    private ScheduledFuture<?> nextWakeUp;
+    private LocalDateTime nextWakeUpAt;
+    
+    // Lease owner written to flow_config so several replicas can share the table
+    private String nodeId;
+    
+    private final RecoveryProgress recoveryProgress = new RecoveryProgress();
+    
+    // Launch executor rejected work; dispatch pauses until then (or until a launch finishes) and the rows stay QUEUED
+    // nanoTime has an arbitrary origin, so start at "now" rather than 0 - never paused until a rejection
+    private volatile long admissionPausedUntilNanos = System.nanoTime();
+    
+    // Times a flow was requeued after its worker was declared dead (REQUEUE policy)
+    private final Map<Long, Integer> deadRequeues = new ConcurrentHashMap<>();
+    
+    // Lower bound for the first keyset page; earlier than any real dateSchedule
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
     
-    /**
-     * Simple and effective crash recovery on application startup
-     */
     @PostConstruct
-    @Transactional
-    public void recoverFromCrash() {
-        log.info("Starting crash recovery...");
+    public void init() {
+        nodeId = leaseOwner.getId();
         
         // Clear any existing state (should be empty, but defensive)
-        executionQueue.clear();
         pendingFlows.clear();
-        isExecuting.set(false);
-        
-        // Find all due configs that are NOT SUCCESS/FAIL
-        String currentTime = getCurrentTimeString();
-        List<FlowConfig> recoveryConfigs = flowConfigRepository
-            .findByDateScheduleLessThanEqualAndStatusLaunchNotIn(
-                currentTime,
-                Arrays.asList(FlowConfig.Status.SUCCESS, FlowConfig.Status.FAIL)
-            );
-        
-        if (recoveryConfigs.isEmpty()) {
-            log.info("No flow configs found for crash recovery");
-            return;
+        fireIndex.clear();
+        synchronized (queueLock) {
+            executionQueue.clear();
+            runningFlows.clear();
+            busyDevices.clear();
         }
+        metrics.bindScheduler(this);
+        log.info("FlowScheduler initialized on node {}", nodeId);
+    }
+    
+    /**
+     * Start crash recovery once the application is ready, on its own thread,
+     * so startup time and health checks do not depend on the size of the backlog
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ExecutorService recoveryThread = Executors.newSingleThreadExecutor(r -> new Thread(r, "FlowRecovery"));
+        recoveryThread.execute(this::recoverFromCrash);
+        recoveryThread.shutdown();
+    }
+    
+    /**
+     * Streaming crash recovery - reads recoverable rows in keyset pages, claims each page
+     * in one statement and starts draining it while the next page is being read
+     */
+    public void recoverFromCrash() {
+        log.info("Starting crash recovery on node {}...", nodeId);
+        recoveryProgress.start();
         
-        log.info("Found {} flow configs for recovery", recoveryConfigs.size());
-        
-        int recoveredCount = 0;
-        for (FlowConfig config : recoveryConfigs) {
-            log.debug("Recovering flow config id: {} (previous status: {})", 
-                     config.getId(), config.getStatusLaunch());
-            
-            // Reset to QUEUED status (fresh execution)
-            flowConfigRepository.updateStatus(config.getId(), FlowConfig.Status.QUEUED);
+        try {
+            // Everything due now that is not terminal (SUCCESS/FAIL/CANCELLED) and not leased by another live node
+            LocalDateTime currentTime = LocalDateTime.now();
+            LocalDateTime afterSchedule = KEYSET_START;
+            long afterId = 0L;
+            List<FlowScheduleRef> page;
+            do {
+                page = flowConfigRepository.findRecoverablePage(
+                    currentTime,
+                    Arrays.asList(FlowConfig.Status.SUCCESS, FlowConfig.Status.FAIL, FlowConfig.Status.CANCELLED),
+                    nodeId,
+                    LocalDateTime.now(),
+                    afterSchedule,
+                    afterId,
+                    PageRequest.of(0, properties.getClaimBatchSize())
+                );
+                if (page.isEmpty()) {
+                    break;
+                }
+                
+                List<Long> ids = new ArrayList<>();
+                for (FlowScheduleRef ref : page) {
+                    ids.add(ref.getId());
+                }
+                
+                // Reset to QUEUED under our lease; the launch resumes from its stage checkpoints
+                List<FlowClaimRef> won = flowConfigRepository.claimForRecovery(ids, nodeId, leaseUntil(), LocalDateTime.now());
+                metrics.claimConflicts(ids.size() - won.size());
+                int claimed = enqueueClaimed(won);
+                metrics.recovered(claimed);
+                recoveryProgress.pageDone(page.size(), claimed);
+                log.info("Crash recovery page {}: {} scanned, {} recovered so far",
+                         recoveryProgress.getPagesRead(), recoveryProgress.getScanned(), recoveryProgress.getRecovered());
+                
+                // Start draining right away instead of waiting for the whole backlog
+                processQueue();
+                
+                FlowScheduleRef last = page.get(page.size() - 1);
+                afterSchedule = last.getDateSchedule();
+                afterId = last.getId();
+            } while (page.size() == properties.getClaimBatchSize());
             
-            // Add to execution queue (prioritized by original dateSchedule)
-            ScheduledFlow scheduledFlow = new ScheduledFlow(config);
-            executionQueue.offer(scheduledFlow);
-            pendingFlows.put(config.getId(), scheduledFlow);
-            recoveredCount++;
+            recoveryProgress.finish(RecoveryProgress.State.COMPLETED);
+            log.info("Crash recovery completed: {} flow configs reset to QUEUED and queued for execution", 
+                     recoveryProgress.getRecovered());
+        } catch (Exception e) {
+            // Whatever was not recovered is picked up by lease takeover and the safety-net poll
+            recoveryProgress.finish(RecoveryProgress.State.FAILED);
+            log.error("Crash recovery failed after {} recovered flow configs", recoveryProgress.getRecovered(), e);
         }
-        
-        log.info("Crash recovery completed: {} flow configs reset to QUEUED and queued for execution", 
-                 recoveredCount);
-        
-        // Start processing the recovered queue
-        processQueue();
     }
     
     /**
-     * Main polling method - runs every 1 minute
+     * Safety-net poll - loads upcoming configs into the fire index.
+     * The dispatch timer normally starts flows at their exact dateSchedule;
+     * this only catches rows written without going through onFlowConfigUpdated.
      */
-    @Scheduled(fixedDelay = 60000) // 1 minute
+    @Scheduled(fixedDelayString = "${flow.scheduler.safety-poll-millis:300000}")
     @Transactional
     public void refreshQueue() {
         try {
-            List<Long> alreadyQueuedIds = new ArrayList<>(pendingFlows.keySet());
-            String currentTime = getCurrentTimeString();
+            LocalDateTime horizon = LocalDateTime.now().plus(properties.getLookAhead());
+            int indexed = 0;
             
-            List<FlowConfig> dueConfigs = flowConfigRepository
-                .findByDateScheduleLessThanEqualAndStatusLaunchAndIdNotIn(
-                    currentTime,
+            // Keyset pagination over (status_launch, date_schedule, id): bounded pages in schedule order
+            LocalDateTime afterSchedule = KEYSET_START;
+            long afterId = 0L;
+            List<FlowScheduleRef> page;
+            do {
+                page = flowConfigRepository.findSchedulePage(
                     FlowConfig.Status.NOT_EXECUTED,
-                    alreadyQueuedIds
+                    horizon,
+                    afterSchedule,
+                    afterId,
+                    PageRequest.of(0, properties.getDuePageSize())
                 );
+                
+                for (FlowScheduleRef ref : page) {
+                    if (!pendingFlows.containsKey(ref.getId())) {
+                        fireIndex.put(ref.getId(), ref.getDateSchedule());
+                        indexed++;
+                    }
+                }
+                
+                if (!page.isEmpty()) {
+                    FlowScheduleRef last = page.get(page.size() - 1);
+                    afterSchedule = last.getDateSchedule();
+                    afterId = last.getId();
+                }
+            } while (page.size() == properties.getDuePageSize());
             
-            if (!dueConfigs.isEmpty()) {
-                log.debug("Found {} new due flow configs", dueConfigs.size());
+            if (indexed > 0) {
+                log.debug("Indexed {} upcoming flow configs", indexed);
             }
             
-            for (FlowConfig config : dueConfigs) {
-                // Atomic update from NOT_EXECUTED to QUEUED
-                int updated = flowConfigRepository.updateStatusIfMatches(
-                    config.getId(), 
-                    FlowConfig.Status.NOT_EXECUTED, 
-                    FlowConfig.Status.QUEUED
-                );
-                
-                if (updated > 0) {
-                    ScheduledFlow scheduledFlow = new ScheduledFlow(config);
-                    executionQueue.offer(scheduledFlow);
-                    pendingFlows.put(config.getId(), scheduledFlow);
-                    log.debug("Queued new flow config id: {}", config.getId());
-                }
+            // Take this node's slice of anything already due that the timers missed
+            int claimed = enqueueClaimed(flowConfigRepository.claimDueBatch(
+                LocalDateTime.now(), nodeId, leaseUntil(), properties.getClaimBatchSize()));
+            if (claimed > 0) {
+                log.debug("Batch-claimed {} due flow configs", claimed);
+                processQueue();
             }
             
-            processQueue();
+            armDispatchTimer();
             
         } catch (Exception e) {
             log.error("Error during queue refresh", e);
@@ -119,26 +233,209 @@ public class FlowScheduler {
     }
     
     /**
-     * Process the queue - ensures serial execution
+     * Re-arm the single wake-up for the earliest indexed fire time
      */
-    private void processQueue() {
-        if (!isExecuting.compareAndSet(false, true)) {
-            return; // Already executing
+    private void armDispatchTimer() {
+        synchronized (timerLock) {
+            Optional<LocalDateTime> next = fireIndex.nextFireTime();
+            if (next.isEmpty()) {
+                cancelWakeUp();
+                return;
+            }
+            
+            LocalDateTime fireTime = next.get();
+            if (nextWakeUp != null && !nextWakeUp.isDone() && fireTime.equals(nextWakeUpAt)) {
+                return; // Already armed for this instant
+            }
+            
+            cancelWakeUp();
+            long delayMillis = Math.max(0, Duration.between(LocalDateTime.now(), fireTime).toMillis());
+            nextWakeUp = dispatchTimer.schedule(this::dispatchDue, delayMillis, TimeUnit.MILLISECONDS);
+            nextWakeUpAt = fireTime;
+            log.debug("Dispatch timer armed for {} ({} ms)", fireTime, delayMillis);
+        }
+    }
+    
+    private void cancelWakeUp() {
+        if (nextWakeUp != null) {
+            nextWakeUp.cancel(false);
+            nextWakeUp = null;
+            nextWakeUpAt = null;
+        }
+    }
+    
+    /**
+     * Timer callback - claims everything that became due and hands it to the launch executor
+     */
+    private void dispatchDue() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> dueIds = new ArrayList<>();
+            // Polled ids leave the index whether or not they are claimed below; a row that another node
+            // moved to a later dateSchedule is not due, stays unclaimed and is re-indexed by the safety poll
+            for (Map.Entry<Long, LocalDateTime> due : fireIndex.pollDue(now)) {
+                dueIds.add(due.getKey());
+            }
+            // Atomic NOT_EXECUTED -> QUEUED per batch, so a busy slot never becomes one huge IN list;
+            // exactly one node wins each row, and only if its dateSchedule really has come
+            int batchSize = properties.getClaimBatchSize();
+            for (int from = 0; from < dueIds.size(); from += batchSize) {
+                List<Long> batch = dueIds.subList(from, Math.min(from + batchSize, dueIds.size()));
+                List<FlowClaimRef> won = flowConfigRepository.claimByIds(batch, now, nodeId, leaseUntil());
+                metrics.claimConflicts(batch.size() - won.size());
+                enqueueClaimed(won);
+            }
+            processQueue();
+        } catch (Exception e) {
+            log.error("Error during timer dispatch", e);
+        } finally {
+            synchronized (timerLock) {
+                nextWakeUp = null;
+                nextWakeUpAt = null;
+            }
+            armDispatchTimer();
+        }
+    }
+    
+    /**
+     * Enqueue rows this node just won, loading their conflict keys in one query.
+     * Returns how many were added.
+     */
+    private int enqueueClaimed(List<FlowClaimRef> claimed) {
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        
+        Map<Long, Set<String>> devicesById = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (FlowClaimRef ref : claimed) {
+            ids.add(ref.getId());
+            devicesById.put(ref.getId(), new HashSet<>());
+        }
+        for (FlowDeviceRef device : flowConfigRepository.findTargetDevicesByIds(ids)) {
+            devicesById.get(device.getId()).add(device.getDevice());
         }
         
+        int added = 0;
+        synchronized (queueLock) {
+            for (FlowClaimRef ref : claimed) {
+                if (pendingFlows.containsKey(ref.getId())) {
+                    continue;
+                }
+                ScheduledFlow scheduledFlow = new ScheduledFlow(ref.getId(), ref.getDateSchedule(), devicesById.get(ref.getId()),
+                    ref.getCreateBy(), parsePriority(ref.getPriority()));
+                executionQueue.offer(scheduledFlow);
+                pendingFlows.put(ref.getId(), scheduledFlow);
+                added++;
+                log.debug("Queued flow config id: {}", ref.getId());
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * Keep our leases alive while flows wait or run, and adopt flows
+     * whose owner stopped renewing (crashed or partitioned node)
+     */
+    @Scheduled(fixedDelayString = "${flow.scheduler.lease-renew-millis:10000}")
+    public void renewLeases() {
         try {
-            ScheduledFlow nextFlow = executionQueue.poll();
-            if (nextFlow == null) {
-                return;
+            List<Long> ownedIds = new ArrayList<>(pendingFlows.keySet());
+            if (!ownedIds.isEmpty()) {
+                flowConfigRepository.renewLeases(nodeId, ownedIds, leaseUntil(),
+                    EnumSet.of(FlowConfig.Status.QUEUED, FlowConfig.Status.IN_PROGRESS));
+                // Cancel requests that reached another node
+                for (Long configId : flowConfigRepository.findCancelRequested(nodeId, ownedIds)) {
+                    cancelOwned(configId, "Cancel requested");
+                }
             }
             
-            Long configId = nextFlow.getFlowConfigId();
+            // One batch per renewal; a large backlog after an outage is shared out over the next renewals
+            int adopted = enqueueClaimed(flowConfigRepository.takeOverExpiredLeases(
+                nodeId,
+                leaseUntil(),
+                LocalDateTime.now(),
+                properties.getClaimBatchSize()
+            ));
+            if (adopted > 0) {
+                log.warn("Took over {} flow configs with expired leases", adopted);
+                metrics.leaseTakeovers(adopted);
+                processQueue();
+            }
+        } catch (Exception e) {
+            log.error("Error renewing flow leases", e);
+        }
+    }
+    
+    private LocalDateTime leaseUntil() {
+        return LocalDateTime.now().plus(properties.getLeaseDuration());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        dispatchTimer.shutdownNow();
+    }
+    
+    /**
+     * Hand queued flows to the launch executor until it rejects one or the queue runs dry.
+     * Flows come out in fair order across tenants; flows whose target devices overlap run
+     * one after another and a later flow never overtakes an earlier queued flow it conflicts with.
+     * A rejected flow goes back to the queue uncharged, its row stays QUEUED, and dispatch pauses
+     * until a launch finishes or admissionRetryMillis passes.
+     */
+    private void processQueue() {
+        if (System.nanoTime() - admissionPausedUntilNanos < 0) {
+            return; // Launch executor saturated - a retry is already armed
+        }
+        
+        boolean rejected = false;
+        synchronized (queueLock) {
+            if (executionQueue.isEmpty()) {
+                return;
+            }
             
+            // Pop in fair order; conflicting flows are set aside and pushed back (uncharged) afterwards
+            Set<String> reservedDevices = new HashSet<>(busyDevices);
+            List<ScheduledFlow> blocked = new ArrayList<>();
+            ScheduledFlow flow;
+            while (blocked.size() < properties.getDispatchScanLimit()
+                    && (flow = executionQueue.poll()) != null) {
+                if (Collections.disjoint(flow.getTargetDevices(), reservedDevices)) {
+                    ScheduledFlow launch = flow;
+                    try {
+                        launchExecutor.execute(() -> runFlow(launch));
+                    } catch (TaskRejectedException e) {
+                        blocked.add(flow);
+                        rejected = true;
+                        break;
+                    }
+                    runningFlows.put(flow.getFlowConfigId(), flow);
+                    busyDevices.addAll(flow.getTargetDevices());
+                } else {
+                    blocked.add(flow);
+                }
+                // Earlier flows keep their devices reserved so the conflict group stays ordered
+                reservedDevices.addAll(flow.getTargetDevices());
+            }
+            for (ScheduledFlow waiting : blocked) {
+                executionQueue.pushBack(waiting);
+            }
+        }
+        
+        if (rejected) {
+            pauseAdmission();
+        }
+    }
+    
+    private void runFlow(ScheduledFlow flow) {
+        Long configId = flow.getFlowConfigId();
+        FlowHeartbeatRegistry.Heartbeat heartbeat = heartbeatRegistry.register(configId);
+        boolean requeued = false;
+        try {
             // Double-check if still valid to execute
             Optional<FlowConfig> currentConfigOpt = flowConfigRepository.findById(configId);
             if (currentConfigOpt.isEmpty()) {
                 log.info("Flow config {} was deleted, skipping", configId);
-                pendingFlows.remove(configId);
                 return;
             }
             
@@ -146,88 +443,440 @@ public class FlowScheduler {
             if (currentConfig.getStatusLaunch() != FlowConfig.Status.QUEUED) {
                 log.debug("Flow config {} status changed to {}, skipping", 
                          configId, currentConfig.getStatusLaunch());
-                pendingFlows.remove(configId);
+                return;
+            }
+            if (currentConfig.isCancelRequested()) {
+                complete(currentConfig, FlowConfig.Status.QUEUED, FlowConfig.Status.CANCELLED);
+                log.info("Flow config {} was cancelled before it started", configId);
                 return;
             }
             
             // Execute the flow
-            executeFlow(currentConfig);
+            metrics.recordStart(flow);
+            requeued = !executeFlow(currentConfig);
+            if (!requeued) {
+                deadRequeues.remove(configId);
+            }
             
+        } catch (Exception e) {
+            log.error("Unexpected error running flow config id: {}", configId, e);
         } finally {
-            isExecuting.set(false);
-            // Check if more items in queue
-            if (!executionQueue.isEmpty()) {
-                processQueue();
+            if (heartbeat.isAbandoned()) {
+                Thread.interrupted(); // The monitor's interrupt must not leak into the next task on this launch thread
+            }
+            // If the monitor already declared this run dead it has released everything itself
+            if (heartbeatRegistry.unregister(configId, heartbeat)) {
+                synchronized (queueLock) {
+                    runningFlows.remove(configId);
+                    busyDevices.removeAll(flow.getTargetDevices());
+                    if (requeued) {
+                        executionQueue.offer(flow); // Still QUEUED in the table, keeps its place
+                    } else {
+                        pendingFlows.remove(configId);
+                    }
+                }
             }
+            // Freed a launch slot and possibly some devices - no need to wait out an admission pause
+            admissionPausedUntilNanos = System.nanoTime();
+            processQueue();
+        }
+    }
+    
+    /**
+     * Detect runs whose launch thread died or stopped beating and apply the dead-flow policy.
+     * Looks only at this node's live runs in memory - no table scan.
+     * A stalled launch whose thread is still alive is only interrupted and marked abandoned: the
+     * interrupt reaches the thread running launchAll, which waits for its stages to stop, skips the
+     * terminal write and only then requeues or fails the row itself, so the old attempt can never
+     * finalize over a new one.
+     */
+    @Scheduled(fixedDelayString = "${flow.scheduler.heartbeat-check-millis:2000}")
+    public void checkHeartbeats() {
+        try {
+            long timeoutNanos = properties.getHeartbeatTimeout().toNanos();
+            for (FlowHeartbeatRegistry.Heartbeat heartbeat : heartbeatRegistry.findExpired(timeoutNanos)) {
+                Long configId = heartbeat.getFlowConfigId();
+                if (heartbeat.getWorker().isAlive()) {
+                    if (heartbeat.abandon()) {
+                        log.warn("Flow config {} worker {} stalled, interrupting; {} policy applies once it exits",
+                                 configId, heartbeat.getWorker().getName(), properties.getDeadFlowPolicy());
+                        heartbeat.getWorker().interrupt();
+                    }
+                    continue;
+                }
+                if (!heartbeatRegistry.unregister(configId, heartbeat)) {
+                    continue; // Finished normally in the meantime
+                }
+                
+                log.warn("Flow config {} worker {} died, applying {} policy",
+                         configId, heartbeat.getWorker().getName(), properties.getDeadFlowPolicy());
+                
+                ScheduledFlow flow;
+                synchronized (queueLock) {
+                    flow = runningFlows.remove(configId);
+                    if (flow != null) {
+                        busyDevices.removeAll(flow.getTargetDevices());
+                    }
+                }
+                if (handleDeadFlow(configId, flow != null) && flow != null) {
+                    synchronized (queueLock) {
+                        executionQueue.offer(flow);
+                    }
+                }
+            }
+            processQueue();
+        } catch (Exception e) {
+            log.error("Error checking flow heartbeats", e);
         }
     }
     
     /**
-     * Execute a single flow config (fresh execution)
+     * Returns true when the row went back to QUEUED and the caller must put the flow in the queue
+     */
+    private boolean handleDeadFlow(Long configId, boolean canRequeue) {
+        int requeues = deadRequeues.getOrDefault(configId, 0);
+        boolean requeue = properties.getDeadFlowPolicy() == FlowSchedulerProperties.DeadFlowPolicy.REQUEUE
+            && canRequeue
+            && requeues < properties.getMaxDeadRequeues();
+        
+        // The abandoned attempt may already have written its own FAIL before it exited
+        Set<FlowConfig.Status> dead = EnumSet.of(FlowConfig.Status.IN_PROGRESS, FlowConfig.Status.FAIL);
+        if (requeue && flowConfigRepository.updateOwnedStatus(configId, nodeId, dead, FlowConfig.Status.QUEUED) > 0) {
+            deadRequeues.put(configId, requeues + 1);
+            metrics.deadFlow(FlowSchedulerProperties.DeadFlowPolicy.REQUEUE);
+            log.info("Requeued flow config {} after dead worker (attempt {})", configId, requeues + 1);
+            return true;
+        }
+        
+        Optional<FlowConfig> config = flowConfigRepository.findById(configId);
+        if (config.isPresent()) {
+            complete(config.get(), FlowConfig.Status.FAIL);
+        }
+        deadRequeues.remove(configId);
+        pendingFlows.remove(configId);
+        metrics.deadFlow(FlowSchedulerProperties.DeadFlowPolicy.FAIL);
+        log.info("Failed flow config {} after dead worker", configId);
+        return false;
+    }
+    
+    /**
+     * Execute a single flow config on the current launch executor thread; an interrupted earlier
+     * attempt resumes from its checkpoints. Returns false if the attempt was abandoned as stalled
+     * and the dead-flow policy put the row back to QUEUED.
      */
     @Transactional
-    public void executeFlow(FlowConfig config) {
+    public boolean executeFlow(FlowConfig config) {
         Long configId = config.getId();
         log.info("Starting execution of flow config id: {}", configId);
         
         try {
-            // Update to IN_PROGRESS
-            flowConfigRepository.updateStatus(configId, FlowConfig.Status.QUEUED, FlowConfig.Status.IN_PROGRESS);
+            // Update to IN_PROGRESS - only while we still hold the lease
+            int started = flowConfigRepository.updateOwnedStatus(
+                configId, nodeId, FlowConfig.Status.QUEUED, FlowConfig.Status.IN_PROGRESS);
+            if (started == 0) {
+                log.warn("Lost lease on flow config id: {}, skipping", configId);
+                return true;
+            }
             
-            // Execute the long-running task (always fresh execution)
+            // Execute the long-running task (resumes after checkpointed stages)
             asyncTaskManager.launchAll(configId);
             
             // Update to SUCCESS
-            flowConfigRepository.updateStatus(configId, FlowConfig.Status.IN_PROGRESS, FlowConfig.Status.SUCCESS);
+            complete(config, FlowConfig.Status.SUCCESS);
             log.info("Successfully completed flow config id: {}", configId);
             
         } catch (Exception e) {
+            if (LaunchCancelledException.isCancellation(e)) {
+                log.info("Cancelled execution of flow config id: {}", configId);
+                complete(config, FlowConfig.Status.CANCELLED);
+                return true;
+            }
+            if (heartbeatRegistry.isAbandoned(configId)) {
+                // Interrupted by the heartbeat monitor; the launch has returned, so nothing of it can finalize later
+                log.warn("Abandoned execution of flow config id: {} ended", configId, e);
+                return !handleDeadFlow(configId, true);
+            }
             log.error("Failed to execute flow config id: {}", configId, e);
-            flowConfigRepository.updateStatus(configId, FlowConfig.Status.IN_PROGRESS, FlowConfig.Status.FAIL);
-        } finally {
-            pendingFlows.remove(configId);
+            complete(config, FlowConfig.Status.FAIL);
         }
+        return true;
     }
     
     /**
-     * Handle real-time updates to flow configs
+     * Stop handing flows to the launch executor for admissionRetryMillis and arm one retry
+     */
+    private void pauseAdmission() {
+        metrics.admissionRejected();
+        log.warn("Launch executor saturated, queued flows wait for a free slot");
+        long retryMillis = properties.getAdmissionRetryMillis();
+        admissionPausedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryMillis);
+        dispatchTimer.schedule(this::processQueue, retryMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Launch a flow now on behalf of an HTTP trigger. The row is claimed as QUEUED with
+     * dateSchedule = now, so it survives a restart and competes fairly with scheduled flows;
+     * the caller never runs launch work itself.
+     * Returns the queue depth at acceptance (the flow's worst-case position), or empty if the
+     * config does not exist or is already queued or running.
+     */
+    public OptionalInt submitNow(Long configId) {
+        fireIndex.remove(configId);
+        List<FlowClaimRef> won = flowConfigRepository.claimForLaunch(configId, nodeId, leaseUntil(), LocalDateTime.now());
+        if (won.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        enqueueClaimed(won);
+        int position;
+        synchronized (queueLock) {
+            position = executionQueue.size();
+        }
+        dispatchTimer.execute(this::processQueue);
+        log.info("Accepted launch of flow config id: {} at queue position {}", configId, position);
+        return OptionalInt.of(position);
+    }
+    
+    /**
+     * Terminal transition. Recurring configs are re-armed at their next cron fire time
+     * in the same statement; runs missed while the node was down are not replayed.
+     * The row may already carry the result - the launch service writes it together with its
+     * outbox event - so both the old status and the result match; only the lease owner completes.
+     */
+    private void complete(FlowConfig config, FlowConfig.Status result) {
+        complete(config, FlowConfig.Status.IN_PROGRESS, result);
+    }
+    
+    private void complete(FlowConfig config, FlowConfig.Status from, FlowConfig.Status result) {
+        Long configId = config.getId();
+        Optional<LocalDateTime> nextFire = CronSchedule.isRecurring(config)
+            ? CronSchedule.nextFireTime(config.getSchedulingCron(), LocalDateTime.now())
+            : Optional.empty();
+        
+        Set<FlowConfig.Status> expected = EnumSet.of(from, result);
+        if (nextFire.isEmpty()) {
+            if (flowConfigRepository.completeOwned(configId, nodeId, expected, result) == 0) {
+                log.warn("Flow config id: {} was no longer ours to complete as {}", configId, result);
+            }
+            return;
+        }
+        
+        if (flowConfigRepository.completeAndRearm(configId, nodeId, expected, result,
+                FlowConfig.Status.NOT_EXECUTED, nextFire.get()) == 0) {
+            log.warn("Flow config id: {} was no longer ours to re-arm after {}", configId, result);
+            return;
+        }
+        // The next fire is a new attempt; a failed run's checkpoints must not be resumed by it
+        launchCheckpointStore.discard(configId);
+        log.debug("Re-armed recurring flow config id: {} for {}", configId, nextFire.get());
+        
+        if (!nextFire.get().isAfter(LocalDateTime.now().plus(properties.getLookAhead()))) {
+            fireIndex.put(configId, nextFire.get());
+            armDispatchTimer();
+        }
+    }
+    
+    /**
+     * Handle real-time creates, updates and deletes of flow configs
      */
     @Transactional
     public void onFlowConfigUpdated(Long configId) {
-        if (pendingFlows.containsKey(configId)) {
-            Optional<FlowConfig> currentConfig = flowConfigRepository.findById(configId);
+        Optional<FlowConfig> currentConfig = flowConfigRepository.findById(configId);
+        reindex(configId, currentConfig);
+        if (currentConfig.isEmpty()) {
+            // Deleted mid-run - stop calling its devices and free the workers
+            launchCancellation.cancel(configId, "Flow config deleted");
+        }
+        
+        synchronized (queueLock) {
+            ScheduledFlow queued = executionQueue.get(configId);
+            if (queued == null) {
+                return; // Not waiting in this node's queue (never queued, or already running)
+            }
+            
             if (currentConfig.isEmpty()) {
                 // Config was deleted
-                executionQueue.removeIf(flow -> flow.getFlowConfigId().equals(configId));
+                executionQueue.remove(configId);
                 pendingFlows.remove(configId);
                 log.debug("Removed deleted flow config from queue: {}", configId);
             } else {
                 FlowConfig config = currentConfig.get();
                 if (config.getStatusLaunch() != FlowConfig.Status.QUEUED) {
                     // Status changed - remove from queue
-                    executionQueue.removeIf(flow -> flow.getFlowConfigId().equals(configId));
+                    executionQueue.remove(configId);
                     pendingFlows.remove(configId);
                     log.debug("Removed updated flow config from queue: {}", configId);
+                } else if (config.getDateSchedule() != null
+                        && !config.getDateSchedule().equals(queued.getScheduledTime())) {
+                    // dateSchedule edited while queued - reposition in place
+                    executionQueue.reschedule(configId, config.getDateSchedule());
+                    pendingFlows.put(configId, executionQueue.get(configId));
+                    log.debug("Rescheduled queued flow config {} to {}", configId, config.getDateSchedule());
+                }
+                if (config.getPriority() != null && config.getPriority() != queued.getPriority()) {
+                    executionQueue.reprioritize(configId, config.getPriority());
+                    pendingFlows.put(configId, executionQueue.get(configId));
                 }
             }
         }
     }
     
-    private String getCurrentTimeString() {
-        return LocalDateTime.now().format(
-            java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    /**
+     * Cancel a queued or running flow. Queued on this node it ends as CANCELLED at once, running
+     * here its launch is stopped; a flow held by another node is stopped by that node on its next
+     * lease renewal. Returns false if the flow is neither queued nor running.
+     */
+    public boolean cancel(Long configId) {
+        if (flowConfigRepository.requestCancel(configId,
+                EnumSet.of(FlowConfig.Status.QUEUED, FlowConfig.Status.IN_PROGRESS)) == 0) {
+            return false;
+        }
+        cancelOwned(configId, "Cancelled by operator");
+        return true;
+    }
+    
+    private void cancelOwned(Long configId, String reason) {
+        ScheduledFlow queued;
+        synchronized (queueLock) {
+            queued = executionQueue.remove(configId);
+            if (queued != null) {
+                pendingFlows.remove(configId);
+            }
+        }
+        if (queued != null) {
+            flowConfigRepository.findById(configId).ifPresent(
+                config -> complete(config, FlowConfig.Status.QUEUED, FlowConfig.Status.CANCELLED));
+            log.info("Cancelled queued flow config id: {}", configId);
+            return;
+        }
+        launchCancellation.cancel(configId, reason);
+    }
+    
+    /**
+     * Change a flow's priority class; a flow already waiting in this node's queue moves in place.
+     * Returns false if the config does not exist.
+     */
+    public boolean changePriority(Long configId, FlowConfig.Priority priority) {
+        if (flowConfigRepository.updatePriority(configId, priority) == 0) {
+            return false;
+        }
+        synchronized (queueLock) {
+            if (executionQueue.reprioritize(configId, priority)) {
+                pendingFlows.put(configId, executionQueue.get(configId));
+                log.debug("Moved queued flow config {} to priority {}", configId, priority);
+            }
+        }
+        processQueue();
+        return true;
+    }
+    
+    private FlowConfig.Priority parsePriority(String priority) {
+        if (priority == null) {
+            return FlowConfig.Priority.NORMAL;
+        }
+        try {
+            return FlowConfig.Priority.valueOf(priority);
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown flow priority '{}', using NORMAL", priority);
+            return FlowConfig.Priority.NORMAL;
+        }
+    }
+    
+    /**
+     * Keep the fire index in step with the latest row and move the wake-up if needed
+     */
+    private void reindex(Long configId, Optional<FlowConfig> latest) {
+        LocalDateTime horizon = LocalDateTime.now().plus(properties.getLookAhead());
+        latest.ifPresent(this::armRecurring);
+        boolean schedulable = latest.isPresent()
+            && latest.get().getStatusLaunch() == FlowConfig.Status.NOT_EXECUTED
+            && latest.get().getDateSchedule() != null
+            && !pendingFlows.containsKey(configId);
+        
+        if (schedulable) {
+            LocalDateTime fireTime = latest.get().getDateSchedule();
+            if (!fireTime.isAfter(horizon)) {
+                fireIndex.put(configId, fireTime);
+            } else {
+                fireIndex.remove(configId); // Picked up by a later safety-net poll
+            }
+        } else {
+            fireIndex.remove(configId);
+        }
+        armDispatchTimer();
+    }
+    
+    /**
+     * Give a newly saved recurring config its first fire time
+     */
+    private void armRecurring(FlowConfig config) {
+        if (!CronSchedule.isRecurring(config)
+                || config.getDateSchedule() != null
+                || config.getStatusLaunch() != FlowConfig.Status.NOT_EXECUTED) {
+            return;
+        }
+        
+        Optional<LocalDateTime> firstFire = CronSchedule.nextFireTime(config.getSchedulingCron(), LocalDateTime.now());
+        if (firstFire.isEmpty()) {
+            log.warn("Flow config {} has an invalid schedulingCron '{}', not scheduled",
+                     config.getId(), config.getSchedulingCron());
+            return;
+        }
+        
+        if (flowConfigRepository.armFirstFire(config.getId(), FlowConfig.Status.NOT_EXECUTED, firstFire.get()) > 0) {
+            config.setDateSchedule(firstFire.get());
+        }
     }
     
     // Utility methods for monitoring
     public int getQueueSize() {
-        return executionQueue.size();
+        synchronized (queueLock) {
+            return executionQueue.size();
+        }
+    }
+    
+    public Map<String, Integer> getQueueSizeByTenant() {
+        synchronized (queueLock) {
+            return executionQueue.sizeByTenant();
+        }
     }
     
     public boolean isCurrentlyExecuting() {
-        return isExecuting.get();
+        synchronized (queueLock) {
+            return !runningFlows.isEmpty();
+        }
+    }
+    
+    /**
+     * Recurring flows that fire within the given window from now
+     */
+    public List<FlowScheduleRef> getRecurringFiringWithin(Duration window) {
+        LocalDateTime now = LocalDateTime.now();
+        return flowConfigRepository.findRecurringFiringBetween(FlowConfig.Status.NOT_EXECUTED, now, now.plus(window));
+    }
+    
+    public RecoveryProgress getRecoveryProgress() {
+        return recoveryProgress;
+    }
+    
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    public List<Long> getRunningFlowIds() {
+        synchronized (queueLock) {
+            return new ArrayList<>(runningFlows.keySet());
+        }
     }
     
     public List<Long> getPendingFlowIds() {
         return new ArrayList<>(pendingFlows.keySet());
     }
+    
+    public int getIndexedFlowCount() {
+        return fireIndex.size();
+    }
+    
+    public Optional<LocalDateTime> getNextWakeUp() {
+        return fireIndex.nextFireTime();
+    }
 }
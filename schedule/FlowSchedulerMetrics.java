@@ -0,0 +1,116 @@
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler and launch-pipeline instrumentation, published through Micrometer
+ * (/actuator/metrics and /actuator/prometheus when the actuator is enabled).
+ * Timers publish percentile histograms so lag and stage latency can be read as p50/p99.
+ */
+@Component
+public class FlowSchedulerMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer scheduleLag;
+    private final Timer queueWait;
+    private final Counter claimConflicts;
+    private final Counter recoveredFlows;
+    private final Counter leaseTakeovers;
+    private final Counter admissionRejected;
+    private final Counter simulationCacheHits;
+    private final Counter simulationCacheMisses;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+
+    public FlowSchedulerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.scheduleLag = Timer.builder("flow.scheduler.schedule.lag")
+            .description("Time from ScheduledFlow.scheduledTime to the flow actually starting")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.queueWait = Timer.builder("flow.scheduler.queue.wait")
+            .description("Time a flow spent in the execution queue before a worker picked it up")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.claimConflicts = Counter.builder("flow.scheduler.claim.conflicts")
+            .description("Due rows this node tried to claim but another node (or an edit) won")
+            .register(registry);
+        this.recoveredFlows = Counter.builder("flow.scheduler.recovered")
+            .description("Flows requeued by crash recovery")
+            .register(registry);
+        this.leaseTakeovers = Counter.builder("flow.scheduler.lease.takeovers")
+            .description("Flows adopted from nodes whose lease expired")
+            .register(registry);
+        this.admissionRejected = Counter.builder("flow.launch.admission.rejected")
+            .description("Launches the saturated launch executor refused; the flow stayed QUEUED")
+            .register(registry);
+        this.simulationCacheHits = Counter.builder("flow.launch.simulation.cache")
+            .description("Simulation tests answered from the simulation result cache")
+            .tag("result", "hit")
+            .register(registry);
+        this.simulationCacheMisses = Counter.builder("flow.launch.simulation.cache")
+            .description("Simulation tests answered from the simulation result cache")
+            .tag("result", "miss")
+            .register(registry);
+    }
+
+    /**
+     * Register gauges for the scheduler's live state
+     */
+    public void bindScheduler(FlowScheduler scheduler) {
+        registry.gauge("flow.scheduler.queue.size", scheduler, FlowScheduler::getQueueSize);
+        registry.gauge("flow.scheduler.running", scheduler, s -> s.getRunningFlowIds().size());
+        registry.gauge("flow.scheduler.indexed", scheduler, FlowScheduler::getIndexedFlowCount);
+    }
+
+    public void recordStart(ScheduledFlow flow) {
+        LocalDateTime now = LocalDateTime.now();
+        scheduleLag.record(nonNegative(Duration.between(flow.getScheduledTime(), now)));
+        queueWait.record(nonNegative(Duration.between(flow.getQueuedAt(), now)));
+    }
+
+    public void recordStage(String stage, long startNanos, boolean success) {
+        stageTimers.computeIfAbsent(stage + (success ? ":success" : ":failure"), key -> Timer.builder("flow.launch.stage.duration")
+                .description("Duration of one launch stage")
+                .tag("stage", stage)
+                .tag("outcome", success ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(registry))
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void claimConflicts(int count) {
+        if (count > 0) {
+            claimConflicts.increment(count);
+        }
+    }
+
+    public void recovered(int count) {
+        recoveredFlows.increment(count);
+    }
+
+    public void leaseTakeovers(int count) {
+        leaseTakeovers.increment(count);
+    }
+
+    public void admissionRejected() {
+        admissionRejected.increment();
+    }
+
+    public void simulationCache(boolean hit) {
+        (hit ? simulationCacheHits : simulationCacheMisses).increment();
+    }
+
+    public void deadFlow(FlowSchedulerProperties.DeadFlowPolicy appliedPolicy) {
+        registry.counter("flow.scheduler.dead.flows", "action", appliedPolicy.name()).increment();
+    }
+
+    private Duration nonNegative(Duration duration) {
+        return duration.isNegative() ? Duration.ZERO : duration;
+    }
+}
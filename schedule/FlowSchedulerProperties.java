@@ -0,0 +1,64 @@
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "flow.scheduler")
+public class FlowSchedulerProperties {
+
+    // How far ahead upcoming configs are loaded into the in-memory fire index
+    private Duration lookAhead = Duration.ofMinutes(10);
+
+    // Safety-net DB poll; the timer normally dispatches before this runs
+    private long safetyPollMillis = 300000;
+
+    // Lease owner id; defaults to the host name, must differ between replicas
+    private String nodeId;
+
+    // A row whose lease is not renewed within this window is taken over by another node
+    private Duration leaseDuration = Duration.ofSeconds(30);
+
+    private long leaseRenewMillis = 10000;
+
+    // Max due rows one node claims per safety-net poll
+    private int claimBatchSize = 50;
+
+    // Dispatch pause after the launch executor rejects a flow; the flow stays QUEUED meanwhile.
+    // Concurrent flows are bounded by launchTaskExecutor; flows sharing a target device still run one at a time
+    private long admissionRetryMillis = 5000;
+    
+    // Max conflicting queued flows skipped over per dispatch before giving up until the next one
+    private int dispatchScanLimit = 1000;
+
+    // Rows read per keyset page of the due-query
+    private int duePageSize = 500;
+
+    // A run whose worker thread died is detected on the next check; a live one must beat within this
+    // timeout. Launches beat every FlowHeartbeatRegistry.BEAT_INTERVAL while a stage runs.
+    private Duration heartbeatTimeout = Duration.ofSeconds(30);
+
+    private long heartbeatCheckMillis = 2000;
+
+    // Fair-share weight per tenant (createBy); a tenant with weight 2 gets twice the starts of one with 1
+    private Map<String, Integer> tenantWeights = new HashMap<>();
+    
+    private int defaultTenantWeight = 1;
+    
+    private DeadFlowPolicy deadFlowPolicy = DeadFlowPolicy.REQUEUE;
+
+    // After this many requeues a flow whose worker keeps dying is failed instead
+    private int maxDeadRequeues = 1;
+
+    public int tenantWeight(String tenant) {
+        return tenantWeights.getOrDefault(tenant, defaultTenantWeight);
+    }
+    
+    public enum DeadFlowPolicy {
+        REQUEUE,
+        FAIL
+    }
+}
@@ -0,0 +1,155 @@
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Binary min-heap of ScheduledFlow ordered like ScheduledFlow.compareTo, with an
+ * id -> heap slot index so cancel and reschedule are O(log n) instead of a linear removeIf.
+ * Not thread-safe; FlowScheduler guards it with its queueLock.
+ */
+public class IndexedFlowQueue {
+
+    private final List<ScheduledFlow> heap = new ArrayList<>();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+
+    /**
+     * Add a flow, or reposition it if one with the same id is already queued
+     */
+    public void offer(ScheduledFlow flow) {
+        Integer slot = slotById.get(flow.getFlowConfigId());
+        if (slot != null) {
+            replaceAt(slot, flow);
+            return;
+        }
+        heap.add(flow);
+        slotById.put(flow.getFlowConfigId(), heap.size() - 1);
+        siftUp(heap.size() - 1);
+    }
+
+    public ScheduledFlow peek() {
+        return heap.isEmpty() ? null : heap.get(0);
+    }
+
+    public ScheduledFlow poll() {
+        return heap.isEmpty() ? null : removeAt(0);
+    }
+
+    /**
+     * Cancel a queued flow, returns null if it was not queued
+     */
+    public ScheduledFlow remove(Long flowConfigId) {
+        Integer slot = slotById.get(flowConfigId);
+        return slot == null ? null : removeAt(slot);
+    }
+
+    /**
+     * Move a queued flow to a new scheduled time in place, returns false if it was not queued
+     */
+    public boolean reschedule(Long flowConfigId, LocalDateTime scheduledTime) {
+        Integer slot = slotById.get(flowConfigId);
+        if (slot == null) {
+            return false;
+        }
+        replaceAt(slot, heap.get(slot).withScheduledTime(scheduledTime));
+        return true;
+    }
+
+    /**
+     * Change the priority class of a queued flow in place, returns false if it was not queued
+     */
+    public boolean reprioritize(Long flowConfigId, FlowConfig.Priority priority) {
+        Integer slot = slotById.get(flowConfigId);
+        if (slot == null) {
+            return false;
+        }
+        replaceAt(slot, heap.get(slot).withPriority(priority));
+        return true;
+    }
+
+    public ScheduledFlow get(Long flowConfigId) {
+        Integer slot = slotById.get(flowConfigId);
+        return slot == null ? null : heap.get(slot);
+    }
+
+    public boolean contains(Long flowConfigId) {
+        return slotById.containsKey(flowConfigId);
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    public void clear() {
+        heap.clear();
+        slotById.clear();
+    }
+
+    private void replaceAt(int slot, ScheduledFlow flow) {
+        ScheduledFlow previous = heap.set(slot, flow);
+        if (flow.compareTo(previous) < 0) {
+            siftUp(slot);
+        } else {
+            siftDown(slot);
+        }
+    }
+
+    private ScheduledFlow removeAt(int slot) {
+        ScheduledFlow removed = heap.get(slot);
+        slotById.remove(removed.getFlowConfigId());
+
+        ScheduledFlow last = heap.remove(heap.size() - 1);
+        if (slot < heap.size()) {
+            heap.set(slot, last);
+            slotById.put(last.getFlowConfigId(), slot);
+            if (last.compareTo(removed) < 0) {
+                siftUp(slot);
+            } else {
+                siftDown(slot);
+            }
+        }
+        return removed;
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (heap.get(slot).compareTo(heap.get(parent)) >= 0) {
+                break;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        int size = heap.size();
+        while (true) {
+            int left = 2 * slot + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && heap.get(right).compareTo(heap.get(left)) < 0) {
+                smallest = right;
+            }
+            if (heap.get(smallest).compareTo(heap.get(slot)) >= 0) {
+                break;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        ScheduledFlow flowA = heap.get(a);
+        ScheduledFlow flowB = heap.get(b);
+        heap.set(a, flowB);
+        heap.set(b, flowA);
+        slotById.put(flowB.getFlowConfigId(), a);
+        slotById.put(flowA.getFlowConfigId(), b);
+    }
+}
@@ -0,0 +1,32 @@
+import org.springframework.stereotype.Component;
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * This node's lease owner id in flow_config. Shared by the scheduler, which claims and renews
+ * leases, and the launch service, whose terminal write only lands while the lease is still ours.
+ */
+@Component
+public class LeaseOwner {
+
+    private final String id;
+
+    public LeaseOwner(FlowSchedulerProperties properties) {
+        this.id = resolve(properties.getNodeId());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    private static String resolve(String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node-" + UUID.randomUUID();
+        }
+    }
+}
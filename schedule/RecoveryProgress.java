@@ -0,0 +1,40 @@
+import lombok.Getter;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the background crash recovery, exposed for monitoring
+ */
+@Getter
+public class RecoveryProgress {
+
+    public enum State {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private volatile State state = State.PENDING;
+    private volatile int pagesRead;
+    private volatile int scanned;
+    private volatile int recovered;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    void start() {
+        startedAt = LocalDateTime.now();
+        state = State.RUNNING;
+    }
+
+    // Only the recovery thread writes, so plain volatile increments are safe
+    void pageDone(int pageSize, int claimed) {
+        pagesRead++;
+        scanned += pageSize;
+        recovered += claimed;
+    }
+
+    void finish(State finalState) {
+        finishedAt = LocalDateTime.now();
+        state = finalState;
+    }
+}
@@ -1,24 +1,57 @@
 import lombok.Data;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Data
 public class ScheduledFlow implements Comparable<ScheduledFlow> {
     private final Long flowConfigId;
     private final LocalDateTime scheduledTime;
-    
-    public ScheduledFlow(FlowConfig config) {
-        this.flowConfigId = config.getId();
-        this.scheduledTime = parseDateSchedule(config.getDateSchedule());
+    // Conflict keys - flows sharing any device never run at the same time
+    private final Set<String> targetDevices;
+    // Fair-share key (createBy); flows without an owner share one anonymous tenant
+    private final String tenant;
+    private final FlowConfig.Priority priority;
+    // When this node queued the flow - start of the queue-wait metric
+    private final LocalDateTime queuedAt;
+
+    public ScheduledFlow(Long flowConfigId, LocalDateTime scheduledTime, Set<String> targetDevices,
+                         String tenant, FlowConfig.Priority priority) {
+        this(flowConfigId, scheduledTime, targetDevices, tenant, priority, LocalDateTime.now());
     }
-    
-    private LocalDateTime parseDateSchedule(String dateSchedule) {
-        return LocalDateTime.parse(dateSchedule, 
-            java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+    private ScheduledFlow(Long flowConfigId, LocalDateTime scheduledTime, Set<String> targetDevices,
+                          String tenant, FlowConfig.Priority priority, LocalDateTime queuedAt) {
+        this.flowConfigId = flowConfigId;
+        this.scheduledTime = scheduledTime;
+        this.targetDevices = targetDevices;
+        this.tenant = tenant != null ? tenant : "";
+        this.priority = priority != null ? priority : FlowConfig.Priority.NORMAL;
+        this.queuedAt = queuedAt;
     }
-    
+
+    public ScheduledFlow withScheduledTime(LocalDateTime newScheduledTime) {
+        return new ScheduledFlow(flowConfigId, newScheduledTime, targetDevices, tenant, priority, queuedAt);
+    }
+
+    public ScheduledFlow withPriority(FlowConfig.Priority newPriority) {
+        return new ScheduledFlow(flowConfigId, scheduledTime, targetDevices, tenant, newPriority, queuedAt);
+    }
+
+    /**
+     * dateSchedule shifted by the priority head start - the position inside the tenant's queue
+     */
+    public LocalDateTime getRankTime() {
+        return scheduledTime.minusMinutes(priority.getHeadStartMinutes());
+    }
+
     @Override
     public int compareTo(ScheduledFlow other) {
-        // Priority by original dateSchedule (earlier first)
-        return this.scheduledTime.compareTo(other.scheduledTime);
+        // Earlier rank first, then original dateSchedule, id breaks ties deterministically
+        int byRank = this.getRankTime().compareTo(other.getRankTime());
+        if (byRank != 0) {
+            return byRank;
+        }
+        int byTime = this.scheduledTime.compareTo(other.scheduledTime);
+        return byTime != 0 ? byTime : this.flowConfigId.compareTo(other.flowConfigId);
     }
 }
@@ -4,6 +4,7 @@ public class FlowConfigService {
 
     private final FlowConfigRepository flowConfigRepository;
     private final FlowConfigMapper flowConfigMapper;
+    private final FlowScheduler flowScheduler;
 
     public FlowConfigResponseDTO createFlowConfig(FlowConfigRequestDTO requestDTO) {
         FlowConfigDataDTO dataDTO = requestDTO.getData();
@@ -13,6 +14,7 @@ public class FlowConfigService {
 
         // Save entity (cascades to children)
         FlowConfig savedEntity = flowConfigRepository.save(entity);
+        reindexAfterCommit(savedEntity.getId());
 
         // Prepare response
         FlowConfigBasicInfo basicInfo = flowConfigMapper.toBasicInfo(savedEntity);
@@ -41,17 +43,18 @@ public FlowConfigFullResponseDTO getFlowConfigById(Long id) {
 }
 
 
+    @Transactional
     public FlowConfigResponseDTO updateFlowConfig(Long id, FlowConfigRequestDTO requestDTO) {
     FlowConfig existing = flowConfigRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Flow configuration not found"));
 
-    // Overwrite fields with updated data
-    FlowConfigDataDTO newData = requestDTO.getData();
-    FlowConfig updated = flowConfigMapper.toEntity(newData);
-    updated.setId(existing.getId()); // preserve ID
+    // Copy the editable fields onto the managed row; lease, cancel flag, priority, status and
+    // a recurring config's date_schedule belong to the scheduler and are not part of the request
+    flowConfigMapper.updateEntity(requestDTO.getData(), existing);
 
-    // Save updated config
-    FlowConfig saved = flowConfigRepository.save(updated);
+    // Only the changed columns are written (@DynamicUpdate), so a concurrent status change survives
+    FlowConfig saved = flowConfigRepository.save(existing);
+    reindexAfterCommit(saved.getId());
 
     // Return response with basic info
     FlowConfigBasicInfo basicInfo = flowConfigMapper.toBasicInfo(saved);
@@ -67,9 +70,27 @@ public FlowConfigFullResponseDTO getFlowConfigById(Long id) {
             .orElseThrow(() -> new RuntimeException("Flow configuration not found"));
 
     flowConfigRepository.delete(config);
+    reindexAfterCommit(id);
     return "Flow configuration with ID " + id + " deleted successfully.";
 }
 
+    /*
+     * The scheduler reads the row on its own connection (and its timer may claim it at once),
+     * so inside a transaction it is only told once the change is committed and visible
+     */
+    private void reindexAfterCommit(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            flowScheduler.onFlowConfigUpdated(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                flowScheduler.onFlowConfigUpdated(id);
+            }
+        });
+    }
+
     
 
 }
@@ -0,0 +1,199 @@
+import com.example.client.AsyncHttpEndpoint;
+import com.example.client.HttpResult;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AsyncHttpEndpoint against a JDK HttpServer stub standing in for a remote service
+ */
+class AsyncHttpEndpointTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(2))
+        .build();
+    private final CountDownLatch releaseSlow = new CountDownLatch(1);
+    private final AtomicInteger slowInFlight = new AtomicInteger();
+    private final AtomicInteger slowMaxInFlight = new AtomicInteger();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/devices/sw-1", exchange -> respond(exchange, 200, "{\"name\":\"sw-1\",\"site\":\"lab\"}"));
+        server.createContext("/devices/garbled", exchange -> respond(exchange, 200, "{\"name\":"));
+        server.createContext("/devices/empty", exchange -> respond(exchange, 204, null));
+        server.createContext("/devices/broken", exchange -> respond(exchange, 500, "database down"));
+        server.createContext("/devices/forbidden", exchange -> respond(exchange, 403, "no access"));
+        server.createContext("/echo", exchange -> respond(exchange, 200,
+            new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+        server.createContext("/slow", exchange -> {
+            slowMaxInFlight.accumulateAndGet(slowInFlight.incrementAndGet(), Math::max);
+            try {
+                releaseSlow.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slowInFlight.decrementAndGet();
+            respond(exchange, 200, "{}");
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    void stopStub() {
+        releaseSlow.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void decodesASuccessfulResponse() throws Exception {
+        HttpResult<Map> result = endpoint(Duration.ofSeconds(5), 4).get("/devices/sw-1", Map.class).get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess(), result::describe);
+        assertEquals(200, result.getStatusCode());
+        assertEquals("lab", result.getBody().get("site"));
+        assertEquals("sw-1", result.map(body -> body.get("name")).getBody());
+    }
+
+    @Test
+    void postsJsonAndDecodesAGenericType() throws Exception {
+        HttpResult<List<String>> result = endpoint(Duration.ofSeconds(5), 4)
+            .post("/echo", List.of("sw-1", "sw-2"), new TypeReference<List<String>>() { })
+            .get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess(), result::describe);
+        assertEquals(List.of("sw-1", "sw-2"), result.getBody());
+    }
+
+    @Test
+    void emptyBodyIsSuccessWithoutABody() throws Exception {
+        HttpResult<Map> result = endpoint(Duration.ofSeconds(5), 4).get("/devices/empty", Map.class).get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess(), result::describe);
+        assertNull(result.getBody());
+    }
+
+    @Test
+    void mapsStatusCodesToOutcomes() throws Exception {
+        AsyncHttpEndpoint endpoint = endpoint(Duration.ofSeconds(5), 4);
+
+        HttpResult<Map> missing = endpoint.get("/devices/unknown", Map.class).get(5, TimeUnit.SECONDS);
+        assertEquals(HttpResult.Outcome.NOT_FOUND, missing.getOutcome());
+        assertEquals(404, missing.getStatusCode());
+
+        HttpResult<Map> forbidden = endpoint.get("/devices/forbidden", Map.class).get(5, TimeUnit.SECONDS);
+        assertEquals(HttpResult.Outcome.CLIENT_ERROR, forbidden.getOutcome());
+
+        HttpResult<Map> broken = endpoint.get("/devices/broken", Map.class).get(5, TimeUnit.SECONDS);
+        assertEquals(HttpResult.Outcome.SERVER_ERROR, broken.getOutcome());
+        assertTrue(broken.getError().contains("database down"), broken::describe);
+        assertNull(broken.map(body -> body.get("name")).getBody());
+    }
+
+    @Test
+    void unreadableBodyIsAnInvalidResponse() throws Exception {
+        HttpResult<Map> result = endpoint(Duration.ofSeconds(5), 4).get("/devices/garbled", Map.class).get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpResult.Outcome.INVALID_RESPONSE, result.getOutcome());
+        assertEquals(200, result.getStatusCode());
+    }
+
+    @Test
+    void slowServiceTimesOut() throws Exception {
+        HttpResult<Map> result = endpoint(Duration.ofMillis(200), 4).get("/slow", Map.class).get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpResult.Outcome.TIMEOUT, result.getOutcome());
+        assertEquals(0, result.getStatusCode());
+    }
+
+    @Test
+    void unreachableServiceIsAConnectionFailure() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        AsyncHttpEndpoint endpoint = new AsyncHttpEndpoint("inventory", httpClient, objectMapper,
+            "http://127.0.0.1:" + closedPort, Duration.ofSeconds(5), 4);
+
+        HttpResult<Map> result = endpoint.get("/devices/sw-1", Map.class).get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpResult.Outcome.CONNECTION_FAILED, result.getOutcome());
+        assertEquals(4, endpoint.getAvailablePermits());
+    }
+
+    @Test
+    void callsBeyondTheLimitWaitForAPermit() throws Exception {
+        AsyncHttpEndpoint endpoint = endpoint(Duration.ofSeconds(10), 2);
+
+        List<CompletableFuture<HttpResult<Map>>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(endpoint.get("/slow", Map.class));
+        }
+        assertEquals(0, endpoint.getAvailablePermits());
+        assertEquals(3, endpoint.getWaiting());
+
+        releaseSlow.countDown();
+        for (CompletableFuture<HttpResult<Map>> call : calls) {
+            assertTrue(call.get(5, TimeUnit.SECONDS).isSuccess());
+        }
+        assertTrue(slowMaxInFlight.get() <= 2, "max in flight " + slowMaxInFlight.get());
+        assertEquals(2, endpoint.getAvailablePermits());
+        assertEquals(0, endpoint.getWaiting());
+    }
+
+    @Test
+    void cancellingACallReleasesItsPermit() throws Exception {
+        AsyncHttpEndpoint endpoint = endpoint(Duration.ofSeconds(10), 1);
+
+        CompletableFuture<HttpResult<Map>> call = endpoint.get("/slow", Map.class);
+        CompletableFuture<HttpResult<Map>> queued = endpoint.get("/devices/sw-1", Map.class);
+        call.cancel(true);
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, endpoint.getAvailablePermits());
+    }
+
+    private AsyncHttpEndpoint endpoint(Duration timeout, int maxConcurrent) {
+        return new AsyncHttpEndpoint("inventory", httpClient, objectMapper, baseUrl, timeout, maxConcurrent);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+}
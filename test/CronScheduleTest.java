@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CronScheduleTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Test
+    void acceptsUnixAndSpringForms() {
+        LocalDateTime expected = LocalDateTime.of(2026, 1, 2, 3, 0);
+
+        assertEquals(Optional.of(expected), CronSchedule.nextFireTime("0 3 * * *", NOON));
+        assertEquals(Optional.of(expected), CronSchedule.nextFireTime("0 0 3 * * *", NOON));
+        assertEquals(Optional.of(expected), CronSchedule.nextFireTime("  0 3 * * *  ", NOON));
+    }
+
+    @Test
+    void nextFireTimeIsStrictlyAfter() {
+        LocalDateTime fire = LocalDateTime.of(2026, 1, 1, 12, 15);
+
+        assertEquals(Optional.of(fire), CronSchedule.nextFireTime("*/15 * * * *", NOON));
+        assertEquals(Optional.of(fire.plusMinutes(15)), CronSchedule.nextFireTime("*/15 * * * *", fire));
+    }
+
+    @Test
+    void blankOrInvalidExpressionHasNoFireTime() {
+        assertFalse(CronSchedule.nextFireTime(null, NOON).isPresent());
+        assertFalse(CronSchedule.nextFireTime("  ", NOON).isPresent());
+        assertFalse(CronSchedule.nextFireTime("not a cron", NOON).isPresent());
+        assertFalse(CronSchedule.nextFireTime("0 25 * * *", NOON).isPresent());
+    }
+
+    @Test
+    void onlySchedulingConfigsWithACronRecur() {
+        FlowConfig config = new FlowConfig();
+        config.setSchedulingCron("0 3 * * *");
+        assertFalse(CronSchedule.isRecurring(config));
+
+        config.setScheduling(true);
+        assertTrue(CronSchedule.isRecurring(config));
+
+        config.setSchedulingCron(" ");
+        assertFalse(CronSchedule.isRecurring(config));
+    }
+}
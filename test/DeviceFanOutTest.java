@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+class DeviceFanOutTest {
+
+    private static final List<String> DEVICES =
+        IntStream.rangeClosed(1, 10).mapToObj(i -> "sw-" + i).collect(Collectors.toList());
+
+    private final FlowDeviceStageStatusRepository repository = mock(FlowDeviceStageStatusRepository.class);
+    private ThreadPoolTaskExecutor executor;
+    private DeviceFanOut fanOut;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setThreadNamePrefix("LaunchDevice-");
+        executor.initialize();
+        fanOut = new DeviceFanOut(executor, repository, mock(FlowHeartbeatRegistry.class),
+                                  mock(LaunchCheckpointStore.class), new LaunchCancellation());
+        ReflectionTestUtils.setField(fanOut, "deviceParallelism", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void failuresWithinTheThresholdDoNotFailTheStage() {
+        ReflectionTestUtils.setField(fanOut, "failureThresholdPercent", 20.0);
+
+        List<FlowDeviceStageStatus> results = fanOut.run(1L, "SWITCH_CONFIG", DEVICES, failOn("sw-3", "sw-7"));
+
+        assertEquals(10, results.size());
+        assertEquals(Set.of("sw-3", "sw-7"), failedDevices(results));
+        verify(repository).deleteByFlowConfigIdAndStage(1L, "SWITCH_CONFIG");
+        verify(repository).saveAll(anyIterable());
+    }
+
+    @Test
+    void failuresAboveTheThresholdFailTheStage() {
+        ReflectionTestUtils.setField(fanOut, "failureThresholdPercent", 20.0);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> fanOut.run(1L, "SWITCH_CONFIG", DEVICES, failOn("sw-1", "sw-2", "sw-3")));
+
+        assertTrue(e.getMessage().contains("3/10"), e.getMessage());
+        // Per-device outcomes are stored before the stage fails
+        verify(repository).saveAll(anyIterable());
+    }
+
+    @Test
+    void zeroThresholdFailsOnAnyDevice() {
+        ReflectionTestUtils.setField(fanOut, "failureThresholdPercent", 0.0);
+
+        assertThrows(IllegalStateException.class, () -> fanOut.run(1L, "POST_CHECK", DEVICES, failOn("sw-10")));
+        assertEquals(10, fanOut.run(1L, "POST_CHECK", DEVICES, failOn()).size());
+    }
+
+    @Test
+    void resumedStageMeasuresFailuresAgainstAllTargetDevices() {
+        ReflectionTestUtils.setField(fanOut, "failureThresholdPercent", 20.0);
+        LaunchContext context = mock(LaunchContext.class);
+        when(context.getId()).thenReturn(1L);
+        when(context.getDevices()).thenReturn(DEVICES);
+        when(context.completedDevices("switch_config")).thenReturn(Set.copyOf(DEVICES.subList(0, 7)));
+        LaunchStage stage = mock(LaunchStage.class);
+        when(stage.name()).thenReturn("switch_config");
+        when(stage.idempotent()).thenReturn(false);
+
+        // 2 of 10 devices, not 2 of the 3 still to do
+        fanOut.runOrWhole(context, stage, failOn("sw-8", "sw-9"), () -> fail("flow has devices"));
+
+        verify(repository).deleteByFlowConfigIdAndStageAndDeviceIn(1L, "switch_config", DEVICES.subList(7, 10));
+    }
+
+    @Test
+    void runsAtMostDeviceParallelismAtOnce() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        fanOut.run(1L, "PRE_CHECK", DEVICES, device -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+        });
+
+        assertTrue(maxRunning.get() <= 4, "max running " + maxRunning.get());
+    }
+
+    private static DeviceFanOut.DeviceTask failOn(String... devices) {
+        Set<String> failing = Set.of(devices);
+        return device -> {
+            if (failing.contains(device)) {
+                throw new IllegalStateException(device + " unreachable");
+            }
+        };
+    }
+
+    private static Set<String> failedDevices(List<FlowDeviceStageStatus> results) {
+        return results.stream()
+            .filter(r -> r.getStatus() == FlowConfig.Status.FAIL)
+            .map(FlowDeviceStageStatus::getDevice)
+            .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,107 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairFlowQueueTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final Map<String, Integer> weights = new HashMap<>();
+    private final FairFlowQueue queue = new FairFlowQueue(tenant -> weights.getOrDefault(tenant, 1));
+
+    @Test
+    void servesTenantsInProportionToTheirWeight() {
+        weights.put("a", 2);
+        for (long i = 0; i < 6; i++) {
+            queue.offer(flow(i, "a", i));
+            queue.offer(flow(100 + i, "b", i));
+        }
+
+        List<String> served = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            served.add(queue.poll().getTenant());
+        }
+
+        assertEquals(4, Collections.frequency(served, "a"));
+        assertEquals(2, Collections.frequency(served, "b"));
+    }
+
+    @Test
+    void largeBatchDoesNotDelayAnotherTenant() {
+        for (long i = 0; i < 50; i++) {
+            queue.offer(flow(i, "batch", i));
+        }
+        queue.offer(flow(1000L, "single", 60));
+
+        // Scheduled last, but its tenant has not been served yet
+        assertEquals("batch", queue.poll().getTenant());
+        assertEquals(1000L, queue.poll().getFlowConfigId());
+    }
+
+    @Test
+    void idleTenantCannotBankCredit() {
+        for (long i = 0; i < 6; i++) {
+            queue.offer(flow(i, "a", i));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals("a", queue.poll().getTenant());
+        }
+        for (long i = 0; i < 3; i++) {
+            queue.offer(flow(100 + i, "b", i));
+        }
+
+        List<String> served = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            served.add(queue.poll().getTenant());
+        }
+        assertTrue(served.contains("a"), "b re-entered at the current virtual time, not at zero: " + served);
+    }
+
+    @Test
+    void pushBackRefundsTheCharge() {
+        queue.offer(flow(1L, "a", 0));
+        queue.offer(flow(2L, "b", 1));
+
+        ScheduledFlow blocked = queue.poll();
+        queue.pushBack(blocked);
+
+        assertEquals(blocked.getFlowConfigId(), queue.poll().getFlowConfigId());
+    }
+
+    @Test
+    void removeRescheduleAndSizeWorkAcrossTenants() {
+        queue.offer(flow(1L, "a", 0));
+        queue.offer(flow(2L, "a", 1));
+        queue.offer(flow(3L, "b", 2));
+
+        assertEquals(3, queue.size());
+        assertEquals(3L, queue.remove(3L).getFlowConfigId());
+        assertNull(queue.remove(3L));
+        assertFalse(queue.contains(3L));
+        assertEquals(Map.of("a", 2), queue.sizeByTenant());
+
+        assertTrue(queue.reschedule(2L, T0.minusMinutes(5)));
+        assertEquals(2L, queue.poll().getFlowConfigId());
+        assertFalse(queue.reschedule(42L, T0));
+    }
+
+    @Test
+    void offerWithAnotherTenantMovesTheFlow() {
+        queue.offer(flow(1L, "a", 0));
+        queue.offer(flow(1L, "b", 0));
+
+        assertEquals(1, queue.size());
+        assertEquals("b", queue.get(1L).getTenant());
+    }
+
+    private static ScheduledFlow flow(long id, String tenant, long minute) {
+        return new ScheduledFlow(id, T0.plusMinutes(minute), Collections.emptySet(), tenant, FlowConfig.Priority.NORMAL);
+    }
+}
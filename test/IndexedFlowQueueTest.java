@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedFlowQueueTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final IndexedFlowQueue queue = new IndexedFlowQueue();
+
+    @Test
+    void pollsInScheduleOrderWithIdAsTieBreak() {
+        queue.offer(flow(3L, 5, FlowConfig.Priority.NORMAL));
+        queue.offer(flow(2L, 0, FlowConfig.Priority.NORMAL));
+        queue.offer(flow(1L, 0, FlowConfig.Priority.NORMAL));
+
+        assertEquals(List.of(1L, 2L, 3L), drain());
+    }
+
+    @Test
+    void priorityIsAHeadStartNotAStrictTier() {
+        queue.offer(flow(1L, 0, FlowConfig.Priority.NORMAL));
+        queue.offer(flow(2L, 5, FlowConfig.Priority.HIGH));  // Ranked at -5
+        queue.offer(flow(3L, -25, FlowConfig.Priority.LOW)); // Ranked at -15
+
+        assertEquals(List.of(3L, 2L, 1L), drain());
+    }
+
+    @Test
+    void removeAnyEntryKeepsTheOrder() {
+        for (long i = 1; i <= 20; i++) {
+            queue.offer(flow(i, (int) (i * 7 % 20), FlowConfig.Priority.NORMAL));
+        }
+        assertEquals(14L, queue.remove(14L).getFlowConfigId());
+        assertNull(queue.remove(14L));
+        assertEquals(19, queue.size());
+
+        List<ScheduledFlow> polled = new ArrayList<>();
+        ScheduledFlow next;
+        while ((next = queue.poll()) != null) {
+            polled.add(next);
+        }
+        List<ScheduledFlow> sorted = new ArrayList<>(polled);
+        Collections.sort(sorted);
+        assertEquals(sorted, polled);
+        assertTrue(polled.stream().noneMatch(f -> f.getFlowConfigId() == 14L));
+    }
+
+    @Test
+    void rescheduleAndReprioritizeMoveTheEntryInPlace() {
+        queue.offer(flow(1L, 0, FlowConfig.Priority.NORMAL));
+        queue.offer(flow(2L, 1, FlowConfig.Priority.NORMAL));
+        queue.offer(flow(3L, 2, FlowConfig.Priority.NORMAL));
+
+        assertTrue(queue.reschedule(3L, T0.minusMinutes(1)));
+        assertEquals(3L, queue.peek().getFlowConfigId());
+
+        assertTrue(queue.reprioritize(2L, FlowConfig.Priority.HIGH));
+        assertEquals(FlowConfig.Priority.HIGH, queue.get(2L).getPriority());
+        assertEquals(List.of(2L, 3L, 1L), drain());
+
+        assertFalse(queue.reschedule(9L, T0));
+        assertFalse(queue.reprioritize(9L, FlowConfig.Priority.LOW));
+    }
+
+    @Test
+    void offeringAQueuedIdReplacesIt() {
+        queue.offer(flow(1L, 10, FlowConfig.Priority.NORMAL));
+        queue.offer(flow(2L, 5, FlowConfig.Priority.NORMAL));
+        queue.offer(flow(1L, 0, FlowConfig.Priority.NORMAL));
+
+        assertEquals(2, queue.size());
+        assertEquals(List.of(1L, 2L), drain());
+        assertTrue(queue.isEmpty());
+    }
+
+    private List<Long> drain() {
+        List<Long> ids = new ArrayList<>();
+        ScheduledFlow next;
+        while ((next = queue.poll()) != null) {
+            ids.add(next.getFlowConfigId());
+        }
+        return ids;
+    }
+
+    private static ScheduledFlow flow(long id, int minute, FlowConfig.Priority priority) {
+        return new ScheduledFlow(id, T0.plusMinutes(minute), Collections.emptySet(), "tenant", priority);
+    }
+}
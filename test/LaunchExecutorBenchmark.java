@@ -0,0 +1,178 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PLATFORM vs VIRTUAL launch executor mode (AsyncConfig) under the same database limit.
+ * A simulated launch follows LAUNCH_ALL: short transactions for status, journal and checkpoints,
+ * blocking REST waits for pre-check and post-check, and a per-device switch push on the device
+ * executor. Connections are a semaphore the size of the Hikari pool. Launches are admitted the way
+ * FlowScheduler.processQueue does it: offered to the launch executor (the only bound on concurrent
+ * flows) until it rejects one, then dispatch pauses until a launch finishes or the retry delay passes.
+ *
+ *   java LaunchExecutorBenchmark [launches=500] [devicesPerLaunch=8] [hikariPoolSize=10]
+ *
+ * The VIRTUAL run needs Java 21+ and is skipped on older JVMs.
+ */
+public class LaunchExecutorBenchmark {
+
+    private static final long PRE_CHECK_MILLIS = 200;
+    private static final long DEVICE_PUSH_MILLIS = 150;
+    private static final long POST_CHECK_MILLIS = 200;
+    private static final long TRANSACTION_MILLIS = 3;
+    // flow.scheduler.admission-retry-millis; a finished launch resumes dispatch earlier
+    private static final long ADMISSION_RETRY_MILLIS = 5000;
+    private static final long CONNECTION_TIMEOUT_MILLIS = 30_000;
+    private static final int RESERVED_CONNECTIONS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int launches = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int devices = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        System.out.printf("%d launches x %d devices, Hikari pool %d%n", launches, devices, poolSize);
+
+        ThreadPoolExecutor launchPool = new ThreadPoolExecutor(5, 10, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(25), named("LaunchAsync-"), new ThreadPoolExecutor.AbortPolicy());
+        ThreadPoolExecutor devicePool = new ThreadPoolExecutor(20, 20, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(100), named("LaunchDevice-"), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            run("PLATFORM", launchPool, devicePool, launches, devices, poolSize);
+        } finally {
+            launchPool.shutdown();
+            devicePool.shutdown();
+        }
+
+        Optional<ThreadFactory> virtualThreads = BoundedVirtualThreadExecutor.virtualThreadFactory("LaunchVirtual-");
+        if (virtualThreads.isEmpty()) {
+            System.out.println("VIRTUAL   skipped, needs Java 21+");
+            return;
+        }
+        // Same caps AsyncConfig derives: launches from the pool, device tasks from their default
+        BoundedVirtualThreadExecutor launchVirtual =
+            new BoundedVirtualThreadExecutor(virtualThreads.get(), poolSize - RESERVED_CONNECTIONS, true);
+        BoundedVirtualThreadExecutor deviceVirtual =
+            new BoundedVirtualThreadExecutor(virtualThreads.get(), 1000, false);
+        run("VIRTUAL", launchVirtual, deviceVirtual, launches, devices, poolSize);
+        launchVirtual.destroy();
+        deviceVirtual.destroy();
+    }
+
+    private static void run(String mode, Executor launchExecutor, Executor deviceExecutor,
+                            int launches, int devices, int poolSize) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        Semaphore connections = new Semaphore(poolSize, true);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger connectionTimeouts = new AtomicInteger();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(launches);
+        Semaphore slotFreed = new Semaphore(0);
+
+        long start = System.nanoTime();
+        int rejections = 0;
+        for (int i = 0; i < launches; i++) {
+            long queuedAt = System.nanoTime();
+            Runnable launch = () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    launch(deviceExecutor, connections, devices, connectionTimeouts);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    latencies.add(System.nanoTime() - queuedAt);
+                    finished.countDown();
+                    slotFreed.release();
+                }
+            };
+            while (true) {
+                slotFreed.drainPermits();
+                try {
+                    launchExecutor.execute(launch);
+                    break;
+                } catch (RejectedExecutionException e) {
+                    rejections++;
+                    slotFreed.tryAcquire(ADMISSION_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        finished.await();
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%-9s wall %6d ms  throughput %6.1f launches/s  latency p50 %6d ms  p99 %6d ms  "
+                + "max concurrent %4d  rejections %5d  connection timeouts %d  peak platform threads %d%n",
+            mode, wallMillis, launches * 1000.0 / Math.max(1, wallMillis),
+            millis(sorted, 0.50), millis(sorted, 0.99), maxRunning.get(), rejections,
+            connectionTimeouts.get(), threads.getPeakThreadCount());
+    }
+
+    private static void launch(Executor deviceExecutor, Semaphore connections, int devices,
+                               AtomicInteger connectionTimeouts) throws InterruptedException {
+        transaction(connections, connectionTimeouts); // IN_PROGRESS
+        Thread.sleep(PRE_CHECK_MILLIS);
+        transaction(connections, connectionTimeouts); // journal flush
+
+        CountDownLatch pushed = new CountDownLatch(devices);
+        for (int d = 0; d < devices; d++) {
+            deviceExecutor.execute(() -> {
+                try {
+                    Thread.sleep(DEVICE_PUSH_MILLIS);
+                    transaction(connections, connectionTimeouts); // device checkpoint
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    pushed.countDown();
+                }
+            });
+        }
+        pushed.await();
+        transaction(connections, connectionTimeouts); // device statuses
+
+        Thread.sleep(POST_CHECK_MILLIS);
+        transaction(connections, connectionTimeouts); // terminal status and outbox event
+    }
+
+    private static void transaction(Semaphore connections, AtomicInteger connectionTimeouts) throws InterruptedException {
+        if (!connections.tryAcquire(CONNECTION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            connectionTimeouts.incrementAndGet();
+            return;
+        }
+        try {
+            Thread.sleep(TRANSACTION_MILLIS);
+        } finally {
+            connections.release();
+        }
+    }
+
+    private static long millis(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1);
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, index)));
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}